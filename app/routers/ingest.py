@@ -4,7 +4,7 @@ import tempfile
 
 from fastapi import APIRouter, HTTPException
 from app.models import LocalIngestRequest, GitSuperimposeRequest, LocalSuperimposeRequest
-from app.services.java_parser import JavaProjectParser
+from app.services.java_parser import JavaProjectParser, SemanticStreamError
 from app.services.neo4j_service import Neo4jService
 from app.services.graph_builder import GraphBuilder
 from app.services.git_service import GitService
@@ -26,14 +26,27 @@ def ingest_local(req: LocalIngestRequest):
             neo.delete_repo(req.project_name, req.repo_id)
 
         parser = JavaProjectParser()
-        graph = parser.parse_directory(req.path, project_name=req.project_name, repo_id=req.repo_id)
-        builder.upsert_repo_graph(graph)
+        records = parser.semantic_records(req.path, project_name=req.project_name, repo_id=req.repo_id)
+        if records is not None:
+            # Neo4j writes start while the semantic parser is still running.
+            try:
+                parsed = builder.upsert_record_stream(records)["counts"]
+            except SemanticStreamError as e:
+                raise HTTPException(
+                    status_code=502,
+                    detail=f"{e}. The graph of {req.project_name}/{req.repo_id} is incomplete; "
+                           "re-run with overwrite_repo once the parser problem is fixed.",
+                )
+        else:
+            graph = parser.parse_directory(req.path, project_name=req.project_name, repo_id=req.repo_id)
+            builder.upsert_repo_graph(graph)
+            parsed = graph.get("stats", {})
 
         return {
             "project_name": req.project_name,
             "repo_id": req.repo_id,
             "stats": {
-                "parsed": graph.get("stats", {}),
+                "parsed": parsed,
                 "neo4j": neo.repo_stats(req.project_name, req.repo_id),
             }
         }
@@ -1,4 +1,4 @@
-from typing import Dict, Any, List, Tuple
+from typing import Dict, Any, Iterable, List, Tuple
 from app.services.neo4j_service import Neo4jService
 
 class GraphBuilder:
@@ -52,6 +52,145 @@ class GraphBuilder:
 
         return {"project_name": p, "repo_id": r}
 
+    # Record kinds of the parser's ndjson stream, ranked so that a batch is only written after
+    # everything it MATCHes on (types before methods/fields/edges, methods before calls).
+    _RECORD_RANK = {"type": 0, "method": 1, "field": 1, "dependency": 1, "extends": 1, "implements": 1, "call": 2}
+
+    def upsert_record_stream(self, records: Iterable[Dict[str, Any]], batch_size: int = 2000) -> Dict[str, Any]:
+        """Write a parser record stream (see SemanticJavaProjectParser.iter_records) in UNWIND batches
+        while it is still being produced, instead of waiting for the whole graph."""
+        p = r = None
+        counts: Dict[str, int] = {}
+        pending: Dict[str, List[Dict[str, Any]]] = {k: [] for k in self._RECORD_RANK}
+
+        def flush(kind: str):
+            rows = pending[kind]
+            if not rows:
+                return
+            pending[kind] = []
+            if kind == "type":
+                self._upsert_types(rows, p, r)
+                self._rel_project_has_class(p, r, rows)
+            elif kind == "method":
+                self._upsert_methods(rows, p, r)
+                self._rel_type_has_method(p, r, rows)
+            elif kind == "field":
+                self._upsert_fields(rows, p, r)
+            elif kind == "dependency":
+                self._rel_depends_on(rows)
+            elif kind == "extends":
+                self._rel_extends([(x.get("child_fqn"), x.get("parent_ref")) for x in rows], p, r)
+            elif kind == "implements":
+                self._rel_implements([(x.get("child_fqn"), x.get("iface_ref")) for x in rows], p, r)
+            elif kind == "call":
+                self._rel_calls(rows, p, r)
+
+        for rec in records:
+            kind = rec.pop("kind", None)
+            if kind == "project":
+                p, r = rec["project_name"], rec["repo_id"]
+                self.neo.run(
+                    "MERGE (pr:Project {project_name:$p, repo_id:$r}) SET pr.name=$p",
+                    {"p": p, "r": r},
+                )
+                continue
+            if kind == "end":
+                counts = rec.get("counts") or counts
+                continue
+            rank = self._RECORD_RANK.get(kind)
+            if rank is None:
+                continue
+            # a record of a later rank means every earlier-ranked record has arrived
+            for k, kr in self._RECORD_RANK.items():
+                if kr < rank and pending[k]:
+                    flush(k)
+            pending[kind].append(rec)
+            if len(pending[kind]) >= batch_size:
+                flush(kind)
+
+        for k in sorted(self._RECORD_RANK, key=self._RECORD_RANK.get):
+            flush(k)
+        return {"project_name": p, "repo_id": r, "counts": counts}
+
+    def apply_delta(self, delta: Dict[str, Any]) -> Dict[str, Any]:
+        """Apply a parser delta document (``--baseline``): deletions first, then upserts.
+
+        Upserts hold every current row of each file whose rows changed, so edges the graph collapses
+        (DEPENDS_ON per type pair) are re-created after their deleted siblings are removed.
+        """
+        p = delta["project_name"]
+        r = delta["repo_id"]
+        dels = delta.get("deletions") or {}
+        ups = delta.get("upserts") or {}
+
+        self._delete_calls(dels.get("calls") or [])
+        self._delete_depends_on(dels.get("dependencies") or [])
+        self._delete_type_refs("EXTENDS", [(x.get("child_fqn"), x.get("parent_ref")) for x in dels.get("extends") or []], p, r)
+        self._delete_type_refs("IMPLEMENTS", [(x.get("child_fqn"), x.get("iface_ref")) for x in dels.get("implements") or []], p, r)
+        self._delete_nodes("Field", ["owner_fqn", "name"], dels.get("fields") or [])
+        self._delete_nodes("Method", ["owner_fqn", "signature"], dels.get("methods") or [])
+        self._delete_nodes("Type", ["fqn"], dels.get("types") or [])
+
+        self.neo.run(
+            "MERGE (pr:Project {project_name:$p, repo_id:$r}) SET pr.name=$p",
+            {"p": p, "r": r},
+        )
+        types = ups.get("types") or []
+        methods = ups.get("methods") or []
+        self._upsert_types(types, p, r)
+        self._rel_project_has_class(p, r, types)
+        self._upsert_methods(methods, p, r)
+        self._rel_type_has_method(p, r, methods)
+        self._upsert_fields(ups.get("fields") or [], p, r)
+        self._rel_depends_on(ups.get("dependencies") or [])
+        self._rel_extends([(x.get("child_fqn"), x.get("parent_ref")) for x in ups.get("extends") or []], p, r)
+        self._rel_implements([(x.get("child_fqn"), x.get("iface_ref")) for x in ups.get("implements") or []], p, r)
+        self._rel_calls(ups.get("calls") or [], p, r)
+
+        return {
+            "project_name": p,
+            "repo_id": r,
+            "files": delta.get("files") or {},
+            "upserts": {k: len(v) for k, v in ups.items()},
+            "deletions": {k: len(v) for k, v in dels.items()},
+        }
+
+    def _delete_nodes(self, label: str, keys: List[str], rows: List[Dict[str, Any]]):
+        if not rows:
+            return
+        match = ", ".join(f"{k}:x.{k}" for k in keys)
+        q = f"""UNWIND $rows AS x
+        MATCH (n:{label} {{project_name:x.project_name, repo_id:x.repo_id, {match}}})
+        DETACH DELETE n"""
+        self.neo.run(q, {"rows": rows})
+
+    def _delete_depends_on(self, deps: List[Dict[str, Any]]):
+        if not deps:
+            return
+        q = """UNWIND $rows AS d
+        MATCH (:Type {project_name:d.project_name, repo_id:d.repo_id, fqn:d.from_fqn})-[rel:DEPENDS_ON]->(:Type {project_name:d.project_name, repo_id:d.repo_id, fqn:d.to_fqn})
+        DELETE rel"""
+        self.neo.run(q, {"rows": deps})
+
+    def _delete_type_refs(self, rel_type: str, pairs: List[Tuple[str, str]], p: str, r: str):
+        if not pairs:
+            return
+        # same name matching as _rel_extends/_rel_implements
+        q = f"""UNWIND $pairs AS x
+        WITH x[0] AS child_fqn, x[1] AS ref
+        MATCH (c:Type {{project_name:$p, repo_id:$r, fqn:child_fqn}})-[rel:{rel_type}]->(t:Type {{project_name:$p, repo_id:$r}})
+        WHERE t.fqn = ref OR t.name = ref OR t.fqn ENDS WITH ('.' + ref) OR t.fqn ENDS WITH ('$' + ref)
+        DELETE rel"""
+        self.neo.run(q, {"pairs": pairs, "p": p, "r": r})
+
+    def _delete_calls(self, calls: List[Dict[str, Any]]):
+        if not calls:
+            return
+        q = """UNWIND $rows AS c
+        MATCH (:Method {project_name:c.project_name, repo_id:c.repo_id, owner_fqn:c.from_owner_fqn, signature:c.from_signature})-[rel:CALLS]->(:Method {project_name:c.project_name, repo_id:c.repo_id, owner_fqn:c.to_owner_fqn, signature:c.to_signature})
+        DELETE rel"""
+        self.neo.run(q, {"rows": calls})
+
     def _upsert_types(self, rows: List[Dict[str, Any]], p: str, r: str):
         if not rows:
             return
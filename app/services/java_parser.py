@@ -1,7 +1,7 @@
 import os
 import re
 import hashlib
-from typing import Dict, Any, List, Optional, Set, Tuple, DefaultDict
+from typing import Dict, Any, Iterator, List, Optional, Set, Tuple, DefaultDict
 from collections import defaultdict
 from app.services.semantic_java_parser import SemanticJavaProjectParser
 
@@ -144,6 +144,10 @@ def _extract_fields(node, owner_fqn: str, project_name: str, repo_id: str, out:
         })
         out_field_types.append(ftype)
 
+class SemanticStreamError(RuntimeError):
+    """The semantic parser failed after its record stream had started."""
+
+
 class JavaProjectParser:
     """
     Generic Java parser producing a project->class->method hierarchy and internal-only dependencies.
@@ -242,6 +246,33 @@ class JavaProjectParser:
         walk(unit)
         return discovered
 
+    def semantic_records(self, root_dir: str, project_name: str, repo_id: str):
+        """Streaming variant of semantic parsing, or None when the semantic parser is not available or
+        fails before it produces anything beyond the project record; the caller then uses parse_directory,
+        which falls back to the syntactic parser. A failure later on raises SemanticStreamError, since
+        records handed out before it may already be in the graph."""
+        if not self._semantic.is_available():
+            return None
+        records = self._semantic.iter_records(root_dir, project_name, repo_id)
+        # the project record is written before any file is parsed; wait for the first one after it
+        head: List[Dict[str, Any]] = []
+        try:
+            for rec in records:
+                head.append(rec)
+                if rec.get("kind") != "project":
+                    break
+        except Exception:
+            return None
+        return self._continue_records(head, records)
+
+    @staticmethod
+    def _continue_records(head: List[Dict[str, Any]], rest: Iterator[Dict[str, Any]]):
+        yield from head
+        try:
+            yield from rest
+        except Exception as e:
+            raise SemanticStreamError(f"Semantic parser failed mid-stream: {e}") from e
+
     def parse_directory(self, root_dir: str, project_name: str, repo_id: str) -> Dict[str, Any]:
         # Prefer semantic parsing (JavaParser + SymbolSolver) when available.
         # This produces resolved types and call-edges, enabling a true semantic graph.
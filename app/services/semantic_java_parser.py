@@ -1,7 +1,13 @@
 import json
 import os
+import shutil
 import subprocess
-from typing import Dict, Any, Optional
+import tempfile
+import urllib.error
+import urllib.request
+from typing import Dict, Any, Iterator, List, Optional
+
+from app.settings import settings
 
 
 class SemanticJavaProjectParser:
@@ -13,10 +19,22 @@ class SemanticJavaProjectParser:
     Requirements on the machine running the app:
       - Java 17+
       - Maven (only to build the jar once) OR a prebuilt jar under semantic-parser/target/
+
+    When SEMANTIC_PARSER_URL points at a parser started with ``--serve``, requests go to that
+    long-running JVM instead of spawning ``java -jar`` per repo.
+
+    With SEMANTIC_PARSER_FORMAT=cbor, parse_project asks for the same document in CBOR with string
+    references (``--format cbor``), roughly a third of the JSON size on large repos; decoding it needs
+    the ``cbor2`` package.
     """
 
-    def __init__(self, repo_root: Optional[str] = None):
+    def __init__(self, repo_root: Optional[str] = None, server_url: Optional[str] = None,
+                 output_format: Optional[str] = None):
         self.repo_root = repo_root or os.path.abspath(os.path.join(os.path.dirname(__file__), "..", ".."))
+        self.server_url = (settings.semantic_parser_url if server_url is None else server_url).rstrip("/")
+        self.output_format = (settings.semantic_parser_format if output_format is None else output_format).lower()
+        if self.output_format not in ("json", "cbor"):
+            raise ValueError(f"Unsupported semantic parser format: {self.output_format} (expected json or cbor)")
 
     def _find_jar(self) -> Optional[str]:
         # Common shade outputs
@@ -37,7 +55,35 @@ class SemanticJavaProjectParser:
                     return os.path.join(target, fn)
         return None
 
-    def parse_project(self, project_path: str, project_name: str, repo_id: str) -> Dict[str, Any]:
+    def is_available(self) -> bool:
+        if self.server_url:
+            return True
+        return self._find_jar() is not None and shutil.which("java") is not None
+
+    def _post(self, project_path: str, project_name: str, repo_id: str, **extra: Any):
+        body = {
+            "root": os.path.abspath(project_path),
+            "projectName": project_name,
+            "repoId": repo_id,
+            **extra,
+        }
+        req = urllib.request.Request(
+            f"{self.server_url}/parse",
+            data=json.dumps(body).encode("utf-8"),
+            headers={"Content-Type": "application/json"},
+            method="POST",
+        )
+        try:
+            return urllib.request.urlopen(req)
+        except urllib.error.HTTPError as e:
+            raise RuntimeError(
+                "Semantic parser server rejected the request.\n"
+                f"URL: {self.server_url}/parse\n"
+                f"Status: {e.code}\n"
+                f"Body:\n{e.read().decode('utf-8', 'replace')}"
+            ) from e
+
+    def _command(self, project_path: str, project_name: str, repo_id: str) -> List[str]:
         jar = self._find_jar()
         if not jar:
             raise RuntimeError(
@@ -45,15 +91,89 @@ class SemanticJavaProjectParser:
                 "  cd semantic-parser && mvn -q -DskipTests package\n"
                 "Then re-run the ingestion."
             )
-
-        cmd = [
+        return [
             "java", "-jar", jar,
             "--root", os.path.abspath(project_path),
             "--projectName", project_name,
             "--repoId", repo_id,
         ]
-        proc = subprocess.run(cmd, capture_output=True, text=True)
+
+    def parse_project(self, project_path: str, project_name: str, repo_id: str) -> Dict[str, Any]:
+        fmt = self.output_format
+        if self.server_url:
+            extra = {"format": fmt} if fmt != "json" else {}
+            with self._post(project_path, project_name, repo_id, **extra) as resp:
+                raw = resp.read()
+            try:
+                data: Dict[str, Any] = self._decode(raw)
+            except ValueError as e:
+                raise RuntimeError(
+                    f"Semantic parser server did not return valid {fmt.upper()} (parse failed mid-stream?).\n"
+                    f"Body (first 2000 bytes):\n{raw[:2000]!r}"
+                ) from e
+            return self._adapt(data)
+
+        cmd = self._command(project_path, project_name, repo_id)
+        if fmt != "json":
+            cmd += ["--format", fmt]
+        proc = subprocess.run(cmd, capture_output=True)
+        stderr = proc.stderr.decode("utf-8", "replace")
 
+        if proc.returncode != 0:
+            raise RuntimeError(
+                "Semantic parser failed.\n"
+                f"Command: {' '.join(cmd)}\n"
+                f"STDOUT:\n{proc.stdout.decode('utf-8', 'replace')}\n"
+                f"STDERR:\n{stderr}"
+            )
+
+        try:
+            data: Dict[str, Any] = self._decode(proc.stdout)
+        except ValueError as e:
+            raise RuntimeError(
+                f"Semantic parser did not return valid {fmt.upper()}.\n"
+                f"STDOUT (first 2000 bytes):\n{proc.stdout[:2000]!r}\n"
+                f"STDERR:\n{stderr}"
+            ) from e
+        return self._adapt(data)
+
+    def _decode(self, raw: bytes) -> Dict[str, Any]:
+        # ValueError on a malformed or truncated document, whatever the format
+        if self.output_format == "cbor":
+            try:
+                import cbor2
+            except ImportError as e:
+                raise RuntimeError("SEMANTIC_PARSER_FORMAT=cbor needs the cbor2 package (pip install cbor2)") from e
+            try:
+                # cbor2 resolves the parser's string references (tags 256/25) itself
+                return cbor2.loads(raw)
+            except cbor2.CBORDecodeError as e:
+                raise ValueError(str(e)) from e
+        return json.loads(raw)
+
+    def parse_delta(self, project_path: str, project_name: str, repo_id: str,
+                    baseline: str, snapshot_out: Optional[str] = None) -> Dict[str, Any]:
+        """Parse only what changed since ``baseline`` (a previous full JSON output) and return the delta
+        document for GraphBuilder.apply_delta. With ``snapshot_out`` the parser also writes the merged
+        full document there, to be used as the next baseline."""
+        extra: Dict[str, Any] = {"baseline": os.path.abspath(baseline)}
+        if snapshot_out:
+            extra["snapshot-out"] = os.path.abspath(snapshot_out)
+        if self.server_url:
+            with self._post(project_path, project_name, repo_id, **extra) as resp:
+                raw = resp.read().decode("utf-8")
+            try:
+                return json.loads(raw)
+            except json.JSONDecodeError as e:
+                raise RuntimeError(
+                    "Semantic parser server did not return a valid delta (parse failed mid-stream?).\n"
+                    f"Body (first 2000 chars):\n{raw[:2000]}"
+                ) from e
+
+        cmd = self._command(project_path, project_name, repo_id)
+        for k, v in extra.items():
+            cmd += [f"--{k}", v]
+        proc = subprocess.run(cmd, capture_output=True, text=True)
         if proc.returncode != 0:
             raise RuntimeError(
                 "Semantic parser failed.\n"
@@ -61,16 +181,17 @@ class SemanticJavaProjectParser:
                 f"STDOUT:\n{proc.stdout}\n"
                 f"STDERR:\n{proc.stderr}"
             )
-
         try:
-            data: Dict[str, Any] = json.loads(proc.stdout)
+            return json.loads(proc.stdout)
         except json.JSONDecodeError as e:
             raise RuntimeError(
-                "Semantic parser did not return valid JSON.\n"
+                "Semantic parser did not return a valid delta.\n"
                 f"STDOUT (first 2000 chars):\n{proc.stdout[:2000]}\n"
                 f"STDERR:\n{proc.stderr}"
             ) from e
 
+    @staticmethod
+    def _adapt(data: Dict[str, Any]) -> Dict[str, Any]:
         # Adapt to the shapes expected by the existing GraphBuilder.
         # GraphBuilder expects:
         #   - graph['types'] as dict keyed by fqn
@@ -93,3 +214,48 @@ class SemanticJavaProjectParser:
             ]
 
         return data
+
+    def iter_records(self, project_path: str, project_name: str, repo_id: str) -> Iterator[Dict[str, Any]]:
+        """Yield parser records one by one while the parser is still running (``--format ndjson``).
+
+        Records are dicts with a ``kind`` key: project, type, method, field, extends, implements,
+        dependency, degraded (a file cut short by a time budget), call and a final ``end`` record
+        carrying per-kind counts. The parser guarantees
+        that all types precede methods and that all methods precede calls.
+        """
+        if self.server_url:
+            saw_end = False
+            with self._post(project_path, project_name, repo_id, format="ndjson") as resp:
+                for line in resp:
+                    if not line.strip():
+                        continue
+                    rec = json.loads(line)
+                    if rec.get("kind") == "end":
+                        saw_end = True
+                    yield rec
+            if not saw_end:
+                raise RuntimeError(f"Semantic parser server ended the record stream early ({self.server_url}).")
+            return
+
+        cmd = self._command(project_path, project_name, repo_id) + ["--format", "ndjson"]
+        with tempfile.TemporaryFile() as err:
+            proc = subprocess.Popen(cmd, stdout=subprocess.PIPE, stderr=err, text=True)
+            saw_end = False
+            try:
+                for line in proc.stdout:
+                    if not line.strip():
+                        continue
+                    rec = json.loads(line)
+                    if rec.get("kind") == "end":
+                        saw_end = True
+                    yield rec
+            finally:
+                proc.stdout.close()
+                rc = proc.wait()
+            if rc != 0 or not saw_end:
+                err.seek(0)
+                raise RuntimeError(
+                    "Semantic parser failed.\n"
+                    f"Command: {' '.join(cmd)}\n"
+                    f"STDERR:\n{err.read().decode('utf-8', 'replace')}"
+                )
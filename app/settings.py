@@ -15,6 +15,12 @@ class Settings(BaseSettings):
     workdir: str = Field(default="/tmp/supergraph_work", alias="WORKDIR")
     max_clone_mb: int = Field(default=500, alias="MAX_CLONE_MB")
 
+    # Optional: URL of a semantic parser started with `java -jar semantic-parser.jar --serve`.
+    # When empty, the parser jar is spawned once per repo.
+    semantic_parser_url: str = Field(default="", alias="SEMANTIC_PARSER_URL")
+    # json or cbor: encoding of the full parser document (cbor is about a third of the size; needs cbor2).
+    semantic_parser_format: str = Field(default="json", alias="SEMANTIC_PARSER_FORMAT")
+
     # Optional: used by the issue/story -> graph query endpoint.
     # If OPENAI_API_KEY is not provided, the system will fall back to heuristics.
     openai_api_key: str = Field(default="", alias="OPENAI_API_KEY")
@@ -0,0 +1,42 @@
+package com.supergraph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Corpora the benchmarks run against, written by CorpusGenerator (multi-module Maven layout, default fan-out
+// and seed). Generation is deterministic, so a corpus already on disk (under -Dbench.corpus.dir, default
+// target/bench-corpus) is reused.
+final class BenchCorpus {
+
+    private static final String VERSION = "2";
+
+    private BenchCorpus() {}
+
+    // small / medium / large, in types
+    static int types(String size) {
+        switch (size) {
+            case "small": return 500;
+            case "medium": return 2_000;
+            case "large": return 10_000;
+            default: throw new IllegalArgumentException("Unknown corpus size: " + size);
+        }
+    }
+
+    static Path get(String size) throws IOException {
+        Path root = Paths.get(System.getProperty("bench.corpus.dir", "target/bench-corpus")).resolve(size).toAbsolutePath();
+        Path marker = root.resolve(".corpus-version");
+        if (Files.isRegularFile(marker) && VERSION.equals(Files.readString(marker))) return root;
+
+        int types = types(size);
+        CorpusGenerator.generate(root, types, CorpusGenerator.defaultModules(types), "maven", 4, 1);
+        Files.writeString(marker, VERSION);
+        return root;
+    }
+
+    static List<Path> javaFiles(Path root) throws IOException {
+        return SemanticParserCli.findJavaFiles(root);
+    }
+}
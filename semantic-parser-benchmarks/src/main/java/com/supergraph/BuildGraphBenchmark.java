@@ -0,0 +1,71 @@
+package com.supergraph;
+
+import com.github.javaparser.ParserConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// A whole two-pass run over a corpus, keeping every unit between the passes or (lowMemory) re-parsing in the
+// second one. Besides the time, heapPeakMb reports the summed heap pool peaks of the run (see Metrics), which
+// is the other half of the tradeoff. Fragments are counted and dropped, so the output graph is not part of it.
+//
+//   java -jar target/benchmarks.jar BuildGraph -p size=large
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class BuildGraphBenchmark {
+
+    @Param({"false", "true"})
+    public boolean lowMemory;
+
+    private ForkJoinPool pool;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long heapPeakMb;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int buildGraph(CorpusState corpus, Heap heap) throws IOException {
+        // a fresh configuration and job per run: the solvers and call cache would otherwise start warm
+        UnitTypeSolver.Units units = lowMemory ? null : new UnitTypeSolver.Units();
+        ParserConfiguration cfg = SemanticParserCli.parserConfiguration(corpus.root,
+                lowMemory ? SemanticParserCli.LOW_MEMORY_SOLVER_CACHE : -1, units, JdkImage.current(), null);
+        SemanticParserCli.Job job = new SemanticParserCli.Job(corpus.root, "bench", "local", cfg, pool, null,
+                new CallResolutionCache(10_000), Metrics.OFF);
+        job.lowMemory = lowMemory;
+        job.units = units;
+        int[] fragments = new int[1];
+        System.gc();
+        Metrics.resetHeapPeak();
+        SemanticParserCli.buildGraph(job, corpus.files, new SemanticParserCli.GraphSink() {
+            @Override
+            public void types(List<Map<String, Object>> rows) {}
+
+            @Override
+            public void unit(SemanticParserCli.Graph fragment) {
+                fragments[0]++;
+            }
+        });
+        heap.heapPeakMb = Metrics.heapPeak() >> 20;
+        return fragments[0];
+    }
+}
@@ -0,0 +1,59 @@
+package com.supergraph;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Resolving every call of one service implementation, on a freshly parsed unit per invocation (JavaParser caches
+// resolved types on the AST, so a reused unit would measure those caches instead). The solver's own caches
+// stay warm, as they are in the middle of a run.
+//
+//   resolveCalls  MethodCallExpr.resolve() for each call
+//   extractUnit   the whole second pass for the unit, through the call resolution cache
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CallResolutionBenchmark {
+
+    private CorpusState corpus;
+    private List<Path> services;
+    private int next;
+    private Path file;
+    private CompilationUnit cu;
+
+    @Setup(Level.Trial)
+    public void setup(CorpusState corpus) {
+        this.corpus = corpus;
+        this.services = corpus.filesEndingWith("ServiceImpl.java");
+    }
+
+    @Setup(Level.Invocation)
+    public void parseNext() {
+        file = services.get(next++ % services.size());
+        cu = SemanticParserCli.parseFile(corpus.job, file);
+    }
+
+    @Benchmark
+    public void resolveCalls(Blackhole bh) {
+        for (MethodCallExpr ce : cu.findAll(MethodCallExpr.class)) {
+            try {
+                bh.consume(ce.resolve());
+            } catch (RuntimeException e) {
+                bh.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public SemanticParserCli.Graph extractUnit() {
+        return SemanticParserCli.extractUnit(corpus.job, cu, corpus.root.relativize(file).toString(), corpus.index);
+    }
+}
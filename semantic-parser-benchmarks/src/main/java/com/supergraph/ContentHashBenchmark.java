@@ -0,0 +1,37 @@
+package com.supergraph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Content hash of one file, at typical small, medium and large source file sizes, with each --hash algorithm.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentHashBenchmark {
+
+    @Param({"1024", "16384", "262144"})
+    public int bytes;
+
+    @Param({"sha1", "xxh64"})
+    public String algorithm;
+
+    private ContentHash hash;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        content = new byte[bytes];
+        new Random(42).nextBytes(content);
+        hash = ContentHash.named(algorithm);
+    }
+
+    @Benchmark
+    public String hash() {
+        return hash.of(content);
+    }
+}
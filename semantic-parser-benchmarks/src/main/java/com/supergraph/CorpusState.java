@@ -0,0 +1,50 @@
+package com.supergraph;
+
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+// A generated corpus (see BenchCorpus) with the parser configuration and type index a run would build for it.
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    Path root;
+    List<Path> files;
+    ParserConfiguration cfg;
+    SemanticParserCli.Job job;
+    SimpleNameIndex index;
+    List<String> fqns = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = BenchCorpus.get(size);
+        files = BenchCorpus.javaFiles(root);
+        cfg = SemanticParserCli.parserConfiguration(root);
+        job = new SemanticParserCli.Job(root, "bench", "local", cfg, ForkJoinPool.commonPool(), null,
+                new CallResolutionCache(10_000), Metrics.OFF);
+        index = new SimpleNameIndex();
+        for (Path f : files) {
+            CompilationUnit cu = SemanticParserCli.parseFile(job, f);
+            if (cu == null) continue;
+            for (ParseCache.TypeDecl d : SemanticParserCli.typeDecls(cu)) {
+                index.add(d.fqn, d.pkg);
+                fqns.add(d.fqn);
+            }
+        }
+    }
+
+    // corpus files whose name ends with the given suffix, e.g. "ServiceImpl.java"
+    List<Path> filesEndingWith(String suffix) {
+        return files.stream().filter(p -> p.getFileName().toString().endsWith(suffix)).collect(Collectors.toList());
+    }
+}
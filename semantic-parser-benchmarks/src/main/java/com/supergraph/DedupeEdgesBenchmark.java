@@ -0,0 +1,47 @@
+package com.supergraph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Adding dependency edges of which a quarter are duplicates, as calls and fields produce them, to a fresh
+// dependency table; repeats are dropped on insertion. The names are interned up front so only the edge rows are measured.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DedupeEdgesBenchmark {
+
+    @Param({"1000", "100000"})
+    public int edges;
+
+    private int[] ids; // 4 symbol ids per edge
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(42);
+        int distinct = edges * 3 / 4;
+        List<Integer> order = new ArrayList<>(edges);
+        for (int i = 0; i < edges; i++) order.add(i < distinct ? i : rnd.nextInt(distinct));
+        Collections.shuffle(order, rnd);
+        SymbolTable symbols = new SymbolTable();
+        ids = new int[edges * 4];
+        int j = 0;
+        for (int k : order) {
+            ids[j++] = symbols.intern("com.acme.shop.service.Entity" + (k / 4) + "Service");
+            ids[j++] = symbols.intern("com.acme.shop.model.Entity" + k);
+            ids[j++] = symbols.intern(k % 2 == 0 ? "call" : "field");
+            ids[j++] = symbols.intern("src/main/java/com/acme/shop/service/Entity" + (k / 4) + "Service.java");
+        }
+    }
+
+    @Benchmark
+    public IntRows dedupe() {
+        IntRows rows = new IntRows(4, 4);
+        for (int j = 0; j < ids.length; j += 4) rows.add(ids[j], ids[j + 1], ids[j + 2], ids[j + 3]);
+        return rows;
+    }
+}
@@ -0,0 +1,57 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Serializing the whole graph of a corpus, as the JSON document and as the ndjson record stream, into a
+// discarding stream.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonWriteBenchmark {
+
+    private final JsonFactory factory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private SemanticParserCli.Graph graph;
+
+    @Setup(Level.Trial)
+    public void setup(CorpusState corpus) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            SemanticParserCli.Job job = new SemanticParserCli.Job(corpus.root, "bench", "local", corpus.cfg, pool, null,
+                    new CallResolutionCache(10_000), Metrics.OFF);
+            graph = new SemanticParserCli.Graph();
+            graph.project_name = "bench";
+            graph.repo_id = "local";
+            SemanticParserCli.buildGraph(job, corpus.files, graph);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void json() throws IOException {
+        try (JsonGenerator gen = factory.createGenerator(OutputStream.nullOutputStream(), JsonEncoding.UTF8)) {
+            GraphJsonWriter.write(gen, graph);
+        }
+    }
+
+    @Benchmark
+    public void ndjson() throws IOException {
+        try (JsonGenerator gen = factory.createGenerator(OutputStream.nullOutputStream(), JsonEncoding.UTF8)) {
+            NdjsonGraphWriter w = new NdjsonGraphWriter(gen, "bench", "local");
+            w.types(graph.types);
+            w.unit(graph);
+            w.finish();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.supergraph;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Parsing one file (no resolution), cycling through every file of the corpus.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+    private CorpusState corpus;
+    private List<Path> files;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup(CorpusState corpus) {
+        this.corpus = corpus;
+        this.files = corpus.files;
+    }
+
+    @Benchmark
+    public CompilationUnit parseFile() {
+        Path f = files.get(next++ % files.size());
+        return SemanticParserCli.parseFile(corpus.job, f);
+    }
+}
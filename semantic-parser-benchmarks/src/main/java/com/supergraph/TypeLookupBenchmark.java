@@ -0,0 +1,103 @@
+package com.supergraph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// extractInternalFromTypeString through SimpleNameIndex against the linear endsWith scan it replaced, over the
+// same mix of fully qualified, simple, qualified-tail and external type strings, from the scope (package and
+// imports) of a service implementation.
+//
+// The internal types are names in CorpusGenerator's layout (seven per entity: model with nested Builder and
+// Status, repository, service, implementation, controller), made in memory rather than parsed from a corpus:
+// a lookup only sees names, and a 50k-type corpus would take minutes to generate and parse per fork.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TypeLookupBenchmark {
+
+    private static final String[] NOUNS = {
+            "Order", "Customer", "Invoice", "Product", "Shipment", "Account", "Payment", "Supplier",
+            "Warehouse", "Ticket", "Contract", "Employee", "Project", "Asset", "Report", "Subscription"
+    };
+
+    @Param({"10000", "50000"})
+    public int types;
+
+    private SimpleNameIndex index;
+    private Set<String> internal; // first-pass order, as the scan walked it
+    private SimpleNameIndex.Scope scope;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        index = new SimpleNameIndex();
+        internal = new LinkedHashSet<>();
+        int entities = types / CorpusGenerator.TYPES_PER_ENTITY;
+        int modules = CorpusGenerator.defaultModules(types);
+        for (int e = 0; e < entities; e++) {
+            int m = (int) ((long) e * modules / entities);
+            String name = NOUNS[e % NOUNS.length] + (e / NOUNS.length);
+            String model = "com.acme.m" + m + ".model";
+            add(model, name);
+            add(model, name + ".Builder");
+            add(model, name + ".Status");
+            add("com.acme.m" + m + ".repo", name + "Repository");
+            add("com.acme.m" + m + ".service", name + "Service");
+            add("com.acme.m" + m + ".service", name + "ServiceImpl");
+            add("com.acme.m" + m + ".web", name + "Controller");
+        }
+        scope = new SimpleNameIndex.Scope("com.acme.m0.service",
+                Set.of("com.acme.m0.model.Order0", "com.acme.m0.repo.Order0Repository"), Set.of("com.acme.common"));
+
+        List<String> fqns = new ArrayList<>(internal);
+        List<String> q = new ArrayList<>();
+        int step = Math.max(1, fqns.size() / 100);
+        for (int i = 0; i < fqns.size(); i += step) {
+            String fqn = fqns.get(i);
+            String[] parts = fqn.split("\\.");
+            q.add(fqn);
+            q.add(parts[parts.length - 1]);
+            q.add(parts[parts.length - 2] + "." + parts[parts.length - 1]);
+            q.add("java.lang.String");
+            q.add("Unknown" + i);
+        }
+        queries = q.toArray(new String[0]);
+    }
+
+    private void add(String pkg, String name) {
+        index.add(pkg + "." + name, pkg);
+        internal.add(pkg + "." + name);
+    }
+
+    @Benchmark
+    public String index() {
+        return SemanticParserCli.extractInternalFromTypeString(queries[next++ % queries.length], index, scope);
+    }
+
+    @Benchmark
+    public String linearScan() {
+        return linearScan(queries[next++ % queries.length], internal);
+    }
+
+    // extractInternalFromTypeString before SimpleNameIndex
+    private static String linearScan(String typeStr, Set<String> internal) {
+        if (typeStr == null) return null;
+        String base = typeStr.trim();
+        // strip array
+        base = base.replace("[]", "");
+        // if fully qualified
+        if (internal.contains(base)) return base;
+        // if simple, match ending
+        String simple = SemanticParserCli.simpleName(base);
+        for (String fqn : internal) {
+            if (fqn.endsWith("." + simple) || fqn.endsWith("$" + simple) || fqn.equals(simple)) return fqn;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,424 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// --baseline <previous-output>: re-extracts only what changed since a previous full JSON document and writes
+// the difference instead of the whole graph.
+//
+// A file is re-extracted when its hash differs from the file_hash on its types in the baseline (or it is
+// new), or when its rows may change because of another file: it has an edge into a type declared in a
+// changed or deleted file, or it mentions the simple name of a type the baseline did not have. Every other
+// file keeps its baseline rows as they are.
+//
+// The delta is file-granular. When any row of a re-extracted file differs, all of that file's current rows
+// are listed under "upserts" (the graph collapses some rows, e.g. DEPENDS_ON ignores "via", so a consumer
+// needs the survivors too); rows whose identity no longer exists anywhere are listed, identity fields only,
+// under "deletions". Apply deletions first, then upserts. --snapshot-out writes the merged full document,
+// which is what the next run should use as its baseline.
+final class BaselineDelta {
+
+    // Section name in the JSON document -> fields that identify a row (the graph's MERGE keys).
+    private static final Map<String, List<String>> IDENTITY = new LinkedHashMap<>();
+    static {
+        IDENTITY.put("types", List.of("fqn"));
+        IDENTITY.put("methods", List.of("owner_fqn", "signature"));
+        IDENTITY.put("fields", List.of("owner_fqn", "name"));
+        IDENTITY.put("dependencies", SemanticParserCli.DEPENDENCY_KEYS);
+        IDENTITY.put("extends", List.of("child_fqn", "parent_ref"));
+        IDENTITY.put("implements", List.of("child_fqn", "iface_ref"));
+        IDENTITY.put("calls", SemanticParserCli.CALL_KEYS);
+    }
+
+    private BaselineDelta() {}
+
+    static void run(SemanticParserCli.Job job, List<Path> javaFiles, Baseline base, Path snapshotOut, JsonGenerator gen) throws IOException {
+        int n = javaFiles.size();
+        String[] rels = new String[n];
+        String[] hashes = new String[n];
+        boolean[] affected = new boolean[n];
+        CompilationUnit[] parsed = new CompilationUnit[n];
+        // Files without any type row in the baseline (unparsable, package-info) have no recorded hash and
+        // are always looked at again; they are cheap. Changed files are parsed from the bytes just hashed:
+        // the types they declare now decide which other files must follow.
+        job.pool.invoke(new SemanticParserCli.IndexRange(0, n, i -> {
+            rels[i] = job.root.relativize(javaFiles.get(i)).toString();
+            SourceFile src = SourceFile.read(javaFiles.get(i), job.mmapThreshold);
+            hashes[i] = src.hash(job.hash);
+            String old = base.fileHashes.get(rels[i]);
+            // unchanged files are skipped, except those cut short last time, which are retried
+            affected[i] = old == null || !old.equals(hashes[i]) || base.degradedFiles.contains(rels[i]);
+            if (affected[i]) parsed[i] = SemanticParserCli.parseFile(job, src);
+        }));
+
+        List<String> added = new ArrayList<>(), changed = new ArrayList<>(), deleted = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            present.add(rels[i]);
+            String old = base.fileHashes.get(rels[i]);
+            if (old == null) added.add(rels[i]);
+            else if (!old.equals(hashes[i])) changed.add(rels[i]);
+        }
+        for (String f : base.fileHashes.keySet()) {
+            if (!present.contains(f)) deleted.add(f);
+        }
+
+        Set<String> gone = new HashSet<>(changed);
+        gone.addAll(deleted);
+        Set<String> referencing = base.filesReferencing(base.typesDeclaredIn(gone));
+        Set<String> newNames = new TreeSet<>();
+        for (int i = 0; i < n; i++) {
+            if (parsed[i] == null) continue;
+            for (ParseCache.TypeDecl d : SemanticParserCli.typeDecls(parsed[i])) {
+                if (!base.typeFiles.containsKey(d.fqn)) newNames.add(d.name);
+            }
+        }
+
+        boolean[] dependent = new boolean[n];
+        for (int i = 0; i < n; i++) dependent[i] = !affected[i] && referencing.contains(rels[i]);
+        boolean[] referenced = dependent.clone();
+        if (!newNames.isEmpty()) {
+            // A new type can turn a previously unresolved name elsewhere into an edge; a plain word match
+            // over the source text is enough to find the candidates.
+            Pattern mention = Pattern.compile("\\b(?:"
+                    + newNames.stream().map(Pattern::quote).collect(Collectors.joining("|")) + ")\\b");
+            job.pool.invoke(new SemanticParserCli.IndexRange(0, n, i -> {
+                if (affected[i] || dependent[i]) return;
+                SourceFile src = SourceFile.read(javaFiles.get(i), job.mmapThreshold);
+                if (!mention.matcher(StandardCharsets.UTF_8.decode(src.content.duplicate())).find()) return;
+                dependent[i] = true;
+                parsed[i] = SemanticParserCli.parseFile(job, src);
+            }));
+        }
+        // files that reference a changed type are read a second time here; their first read only hashed them
+        parseMarked(job, javaFiles, referenced, parsed);
+        if (job.units != null) job.units.publish(SemanticParserCli.kept(parsed));
+        List<String> dependents = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!dependent[i]) continue;
+            affected[i] = true;
+            dependents.add(rels[i]);
+        }
+
+        // Type index as a full run would build it: fresh declarations for re-extracted files, baseline
+        // declarations for the rest, first file wins.
+        Map<String, SemanticParserCli.TypeMeta> internalTypes = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            List<ParseCache.TypeDecl> decls;
+            if (!affected[i]) decls = base.typeDecls(rels[i]);
+            else if (parsed[i] != null) decls = SemanticParserCli.typeDecls(parsed[i]);
+            else continue;
+            for (ParseCache.TypeDecl d : decls) {
+                internalTypes.putIfAbsent(d.fqn, new SemanticParserCli.TypeMeta(d.fqn, d.name, rels[i], d.pkg, hashes[i]));
+            }
+        }
+        SimpleNameIndex internalFqns = new SimpleNameIndex();
+        for (SemanticParserCli.TypeMeta tm : internalTypes.values()) internalFqns.add(tm.fqn, tm.pkg);
+
+        // Current rows of every re-extracted file, in output shape, grouped by file.
+        Map<String, Map<String, List<Map<String, Object>>>> fresh = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (affected[i]) fresh.put(rels[i], emptySections());
+        }
+        for (SemanticParserCli.TypeMeta tm : internalTypes.values()) {
+            Map<String, List<Map<String, Object>>> s = fresh.get(tm.file);
+            if (s != null) s.get("types").add(SemanticParserCli.typeRow(job, tm));
+        }
+        List<CompletableFuture<SemanticParserCli.Graph>> pending = new ArrayList<>();
+        List<String> pendingRels = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!affected[i] || parsed[i] == null) continue;
+            CompilationUnit cu = parsed[i];
+            String rel = rels[i];
+            parsed[i] = null;
+            pending.add(CompletableFuture.supplyAsync(
+                    () -> SemanticParserCli.extractUnit(job, cu, rel, internalFqns), job.pool));
+            pendingRels.add(rel);
+        }
+        Map<String, Set<String>> seen = new HashMap<>();
+        List<Map<String, Object>> degraded = new ArrayList<>();
+        for (int k = 0; k < pending.size(); k++) {
+            SemanticParserCli.Graph f = pending.get(k).join();
+            degraded.addAll(f.degraded);
+            Map<String, List<Map<String, Object>>> s = fresh.get(pendingRels.get(k));
+            s.get("methods").addAll(f.methods);
+            s.get("fields").addAll(f.fields);
+            // edges are deduplicated across the re-extracted files the way a full run does it
+            for (String section : SemanticParserCli.Graph.EDGE_SECTIONS) addEdges(s, section, f.edgeRows(section), seen);
+        }
+        if (job.units != null) job.units.clear();
+
+        // A file with no rows before or after (package-info, unparsable) is not worth reporting as added.
+        added.removeIf(f -> fresh.get(f).values().stream().allMatch(List::isEmpty));
+
+        // Identities still present after this run: every current row of a re-extracted file plus every
+        // baseline row that is kept.
+        Map<String, Set<String>> live = new HashMap<>();
+        for (Map<String, List<Map<String, Object>>> s : fresh.values()) {
+            for (String section : IDENTITY.keySet()) {
+                for (Map<String, Object> row : s.get(section)) live.computeIfAbsent(section, k -> new HashSet<>()).add(identity(section, row));
+            }
+        }
+        Set<String> replaced = new HashSet<>(fresh.keySet());
+        replaced.addAll(deleted);
+        for (String section : IDENTITY.keySet()) {
+            for (Map<String, Object> row : base.rows(section)) {
+                if (!replaced.contains(base.fileOf(section, row))) {
+                    live.computeIfAbsent(section, k -> new HashSet<>()).add(identity(section, row));
+                }
+            }
+        }
+
+        Map<String, List<Map<String, Object>>> upserts = emptySections();
+        List<String> modified = new ArrayList<>();
+        Map<String, Map<String, Set<Map<String, Object>>>> old = base.rowsByFile(replaced);
+        for (Map.Entry<String, Map<String, List<Map<String, Object>>>> e : fresh.entrySet()) {
+            Map<String, Set<Map<String, Object>>> before = old.getOrDefault(e.getKey(), Map.of());
+            boolean same = true;
+            for (String section : IDENTITY.keySet()) {
+                Set<Map<String, Object>> now = new HashSet<>(e.getValue().get(section));
+                if (!now.equals(before.getOrDefault(section, Set.of()))) { same = false; break; }
+            }
+            if (same) continue;
+            modified.add(e.getKey());
+            for (String section : IDENTITY.keySet()) upserts.get(section).addAll(e.getValue().get(section));
+        }
+
+        Map<String, List<Map<String, Object>>> deletions = emptySections();
+        for (String section : IDENTITY.keySet()) {
+            Set<String> liveKeys = live.getOrDefault(section, Set.of());
+            Set<String> listed = new HashSet<>();
+            for (Map<String, Object> row : base.rows(section)) {
+                if (!replaced.contains(base.fileOf(section, row))) continue;
+                String key = identity(section, row);
+                if (!liveKeys.contains(key) && listed.add(key)) deletions.get(section).add(identityRow(section, row));
+            }
+        }
+
+        gen.writeStartObject();
+        gen.writeStringField("project_name", job.projectName);
+        gen.writeStringField("repo_id", job.repoId);
+        gen.writeStringField("mode", "delta");
+        gen.writeObjectFieldStart("files");
+        writeList(gen, "added", added);
+        writeList(gen, "changed", changed);
+        writeList(gen, "deleted", deleted);
+        writeList(gen, "dependent", dependents);
+        writeList(gen, "modified", modified);
+        gen.writeEndObject();
+        writeSections(gen, "upserts", upserts);
+        writeSections(gen, "deletions", deletions);
+        gen.writeArrayFieldStart("degraded");
+        for (Map<String, Object> row : degraded) GraphJsonWriter.writeValue(gen, row);
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        gen.flush();
+
+        if (snapshotOut != null) writeSnapshot(snapshotOut, gen.getPrettyPrinter() != null, job, base, replaced, fresh, degraded);
+
+        int up = 0, del = 0;
+        for (String section : IDENTITY.keySet()) { up += upserts.get(section).size(); del += deletions.get(section).size(); }
+        System.err.println("delta: " + added.size() + " added, " + changed.size() + " changed, " + deleted.size()
+                + " deleted, " + dependents.size() + " dependent of " + n + " files; "
+                + modified.size() + " files with new rows, " + up + " upserts, " + del + " deletions");
+    }
+
+    private static void parseMarked(SemanticParserCli.Job job, List<Path> javaFiles, boolean[] marked, CompilationUnit[] parsed) {
+        job.pool.invoke(new SemanticParserCli.IndexRange(0, javaFiles.size(), i -> {
+            if (marked[i]) parsed[i] = SemanticParserCli.parseFile(job, javaFiles.get(i));
+        }));
+    }
+
+    private static Map<String, List<Map<String, Object>>> emptySections() {
+        Map<String, List<Map<String, Object>>> m = new LinkedHashMap<>();
+        for (String section : IDENTITY.keySet()) m.put(section, new ArrayList<>());
+        return m;
+    }
+
+    private static void addEdges(Map<String, List<Map<String, Object>>> s, String section,
+                                 List<Map<String, Object>> rows, Map<String, Set<String>> seen) {
+        Set<String> keys = seen.computeIfAbsent(section, k -> new HashSet<>());
+        for (Map<String, Object> row : rows) {
+            if (keys.add(identity(section, row))) s.get(section).add(row);
+        }
+    }
+
+    private static String identity(String section, Map<String, Object> row) {
+        return SemanticParserCli.edgeKey(row, IDENTITY.get(section));
+    }
+
+    private static Map<String, Object> identityRow(String section, Map<String, Object> row) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("project_name", row.get("project_name"));
+        out.put("repo_id", row.get("repo_id"));
+        for (String k : IDENTITY.get(section)) out.put(k, row.get(k));
+        return out;
+    }
+
+    private static void writeList(JsonGenerator gen, String name, List<String> values) throws IOException {
+        gen.writeArrayFieldStart(name);
+        for (String v : values) gen.writeString(v);
+        gen.writeEndArray();
+    }
+
+    private static void writeSections(JsonGenerator gen, String name, Map<String, List<Map<String, Object>>> sections) throws IOException {
+        gen.writeObjectFieldStart(name);
+        for (Map.Entry<String, List<Map<String, Object>>> e : sections.entrySet()) {
+            gen.writeArrayFieldStart(e.getKey());
+            for (Map<String, Object> row : e.getValue()) GraphJsonWriter.writeValue(gen, row);
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+
+    // Same layout as a full run's document: kept baseline rows, then the current rows of re-extracted files.
+    private static void writeSnapshot(Path out, boolean pretty, SemanticParserCli.Job job, Baseline base, Set<String> replaced,
+                                      Map<String, Map<String, List<Map<String, Object>>>> fresh,
+                                      List<Map<String, Object>> degraded) throws IOException {
+        Path tmp = Files.createTempFile(out.toAbsolutePath().getParent(), out.getFileName().toString(), ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+             JsonGenerator gen = new JsonFactory().createGenerator(os, JsonEncoding.UTF8)) {
+            if (pretty) gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+            gen.writeStringField("project_name", job.projectName);
+            gen.writeStringField("repo_id", job.repoId);
+            for (String section : IDENTITY.keySet()) {
+                gen.writeArrayFieldStart(section);
+                for (Map<String, Object> row : base.rows(section)) {
+                    if (!replaced.contains(base.fileOf(section, row))) GraphJsonWriter.writeValue(gen, row);
+                }
+                for (Map<String, List<Map<String, Object>>> s : fresh.values()) {
+                    for (Map<String, Object> row : s.get(section)) GraphJsonWriter.writeValue(gen, row);
+                }
+                gen.writeEndArray();
+            }
+            gen.writeArrayFieldStart("degraded");
+            for (Map<String, Object> row : base.rows("degraded")) {
+                if (!replaced.contains((String) row.get("file"))) GraphJsonWriter.writeValue(gen, row);
+            }
+            for (Map<String, Object> row : degraded) GraphJsonWriter.writeValue(gen, row);
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // A previous full document, indexed by file.
+    static final class Baseline {
+        final Map<String, Object> doc;
+        final Map<String, String> fileHashes = new LinkedHashMap<>(); // rel -> file_hash
+        final Map<String, String> typeFiles = new HashMap<>();        // fqn -> rel
+        final Map<String, List<Map<String, Object>>> typesByFile = new HashMap<>();
+        final Set<String> degradedFiles = new HashSet<>();                // cut short by a time budget
+
+        private Baseline(Map<String, Object> doc) {
+            this.doc = doc;
+            for (Map<String, Object> t : rows("types")) {
+                String file = (String) t.get("file");
+                fileHashes.putIfAbsent(file, String.valueOf(t.get("file_hash")));
+                typeFiles.putIfAbsent((String) t.get("fqn"), file);
+                typesByFile.computeIfAbsent(file, k -> new ArrayList<>()).add(t);
+            }
+            for (Map<String, Object> d : rows("degraded")) degradedFiles.add((String) d.get("file"));
+        }
+
+        static Baseline load(Path p, String projectName, String repoId) {
+            Map<String, Object> doc;
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> m = new ObjectMapper().readValue(p.toFile(), Map.class);
+                doc = m;
+            } catch (IOException e) {
+                throw new SemanticParserCli.UsageException("Unreadable --baseline " + p + ": " + e.getMessage());
+            }
+            if ("delta".equals(doc.get("mode"))) {
+                throw new SemanticParserCli.UsageException("--baseline must be a full document (see --snapshot-out), not a delta: " + p);
+            }
+            if (!(doc.get("types") instanceof List)) throw new SemanticParserCli.UsageException("--baseline is not parser JSON output: " + p);
+            if (!projectName.equals(doc.get("project_name")) || !repoId.equals(doc.get("repo_id"))) {
+                throw new SemanticParserCli.UsageException("--baseline was written for " + doc.get("project_name") + "/" + doc.get("repo_id")
+                        + ", not " + projectName + "/" + repoId);
+            }
+            return new Baseline(doc);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> rows(String section) {
+            Object o = doc.get(section);
+            return o instanceof List ? (List<Map<String, Object>>) o : List.of();
+        }
+
+        // Declarations as the first pass would have produced them; the package is the shortest
+        // qualifier among the file's types (its top-level type).
+        List<ParseCache.TypeDecl> typeDecls(String rel) {
+            List<Map<String, Object>> ts = typesByFile.getOrDefault(rel, List.of());
+            String pkg = null;
+            for (Map<String, Object> t : ts) {
+                String fqn = (String) t.get("fqn"), name = (String) t.get("name");
+                String q = fqn.endsWith("." + name) ? fqn.substring(0, fqn.length() - name.length() - 1) : "";
+                if (pkg == null || q.length() < pkg.length()) pkg = q;
+            }
+            List<ParseCache.TypeDecl> out = new ArrayList<>(ts.size());
+            for (Map<String, Object> t : ts) out.add(new ParseCache.TypeDecl((String) t.get("fqn"), (String) t.get("name"), pkg));
+            return out;
+        }
+
+        Set<String> typesDeclaredIn(Set<String> files) {
+            Set<String> out = new HashSet<>();
+            for (String f : files) {
+                for (Map<String, Object> t : typesByFile.getOrDefault(f, List.of())) out.add((String) t.get("fqn"));
+            }
+            return out;
+        }
+
+        // Files with an edge into one of the given types.
+        Set<String> filesReferencing(Set<String> fqns) {
+            Set<String> out = new HashSet<>();
+            if (fqns.isEmpty()) return out;
+            for (Map<String, Object> r : rows("dependencies")) if (fqns.contains(r.get("to_fqn"))) out.add(fileOf("dependencies", r));
+            for (Map<String, Object> r : rows("calls")) if (fqns.contains(r.get("to_owner_fqn"))) out.add(fileOf("calls", r));
+            for (Map<String, Object> r : rows("extends")) if (fqns.contains(r.get("parent_ref"))) out.add(fileOf("extends", r));
+            for (Map<String, Object> r : rows("implements")) if (fqns.contains(r.get("iface_ref"))) out.add(fileOf("implements", r));
+            out.remove(null);
+            return out;
+        }
+
+        // File a row was extracted from; rows without a "file" field belong to their owner type's file.
+        String fileOf(String section, Map<String, Object> row) {
+            switch (section) {
+                case "fields": return typeFiles.get(row.get("owner_fqn"));
+                case "extends":
+                case "implements": return typeFiles.get(row.get("child_fqn"));
+                default: return (String) row.get("file");
+            }
+        }
+
+        Map<String, Map<String, Set<Map<String, Object>>>> rowsByFile(Set<String> files) {
+            Map<String, Map<String, Set<Map<String, Object>>>> out = new HashMap<>();
+            for (String section : IDENTITY.keySet()) {
+                for (Map<String, Object> row : rows(section)) {
+                    String f = fileOf(section, row);
+                    if (f == null || !files.contains(f)) continue;
+                    out.computeIfAbsent(f, k -> new HashMap<>()).computeIfAbsent(section, k -> new HashSet<>()).add(row);
+                }
+            }
+            return out;
+        }
+    }
+}
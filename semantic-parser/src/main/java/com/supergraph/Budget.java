@@ -0,0 +1,118 @@
+package com.supergraph;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+
+// --file-budget-ms / --resolve-budget-ms: caps on the symbol-solver time spent on one file and on one call.
+//
+// JavaParser's resolution cannot be interrupted, but nearly every step of it asks the type solver for a
+// type, so the solver installed by parserConfiguration checks the calling thread's budget on each lookup
+// and throws Exceeded once it is spent. Exceeded is an Error so that JavaParser's own catch (Exception)
+// blocks let it through; it ends up in the best-effort catch (Throwable) around each resolution. Once the
+// file budget is gone, the remaining calls of the file are skipped and declared types fall back to their
+// source text, so types, methods and fields are still emitted and the file is reported as degraded.
+final class Budget {
+
+    static final class Exceeded extends Error {
+        private Exceeded() { super("time budget exceeded", null, false, false); }
+    }
+
+    private static final Exceeded EXCEEDED = new Exceeded();
+    private static final ThreadLocal<Budget> CURRENT = new ThreadLocal<>();
+
+    private final long fileStart = System.nanoTime();
+    private final long fileNanos;    // 0: no file budget
+    private final long resolveNanos; // 0: no per-resolution budget
+    private long resolveStart;
+    private boolean resolving;
+    private boolean tripped;         // Exceeded thrown since the last beginResolve()
+    boolean fileSpent;
+    boolean resolveSpent;            // at least one resolution was cut off
+    int abandoned;                   // calls cut off or skipped
+
+    private Budget(long fileMs, long resolveMs) {
+        this.fileNanos = fileMs * 1_000_000;
+        this.resolveNanos = resolveMs * 1_000_000;
+    }
+
+    // Installs a budget for the calling thread; null (and nothing installed) when both limits are off.
+    static Budget enter(long fileMs, long resolveMs) {
+        if (fileMs <= 0 && resolveMs <= 0) return null;
+        Budget b = new Budget(fileMs, resolveMs);
+        CURRENT.set(b);
+        return b;
+    }
+
+    void exit() {
+        CURRENT.remove();
+    }
+
+    boolean fileSpent() {
+        if (!fileSpent && fileNanos > 0 && System.nanoTime() - fileStart > fileNanos) fileSpent = true;
+        return fileSpent;
+    }
+
+    void beginResolve() {
+        resolveStart = System.nanoTime();
+        resolving = true;
+        tripped = false;
+    }
+
+    // true when the resolution since beginResolve() was cut off
+    boolean endResolve() {
+        resolving = false;
+        if (!tripped) return false;
+        abandoned++;
+        if (!fileSpent) resolveSpent = true;
+        return true;
+    }
+
+    boolean degraded() {
+        return fileSpent || resolveSpent;
+    }
+
+    static void check() {
+        Budget b = CURRENT.get();
+        if (b == null) return;
+        long now = System.nanoTime();
+        if (b.fileSpent || (b.fileNanos > 0 && now - b.fileStart > b.fileNanos)) {
+            b.fileSpent = true;
+            b.tripped = true;
+            throw EXCEEDED;
+        }
+        if (b.resolving && b.resolveNanos > 0 && now - b.resolveStart > b.resolveNanos) {
+            b.tripped = true;
+            throw EXCEEDED;
+        }
+    }
+
+    // Root type solver that checks the budget before every lookup. The wrapped solver (and through it every
+    // solver it combines) reports this one as its root, so lookups made from inside declarations pass
+    // through it too.
+    static final class CheckingTypeSolver implements TypeSolver {
+        private final TypeSolver delegate;
+        private TypeSolver parent;
+
+        CheckingTypeSolver(TypeSolver delegate) {
+            this.delegate = delegate;
+            delegate.setParent(this);
+        }
+
+        @Override
+        public TypeSolver getParent() {
+            return parent;
+        }
+
+        @Override
+        public void setParent(TypeSolver parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+            check();
+            return delegate.tryToSolveType(name);
+        }
+    }
+}
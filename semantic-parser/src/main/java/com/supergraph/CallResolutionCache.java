@@ -0,0 +1,113 @@
+package com.supergraph;
+
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.resolution.types.ResolvedType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+// Memoizes MethodCallExpr resolution by (resolved scope type, method name, argument types).
+//
+// Those three decide which method a call binds to, so repeated shapes such as repository.save(x) across a
+// service class only pay for the overload search once. The scope and argument types are needed for the
+// call row anyway and JavaParser keeps them on the AST nodes, so building the key is cheap next to the
+// method lookup it replaces. Calls without a scope expression, with a scope that is not a value (static
+// calls through a type name) or with an argument whose type does not resolve are not cached, since their
+// binding depends on more than the key. Nor are calls whose scope or argument types are or contain a type
+// variable: T describes as "T" in every generic declaration, whatever its bound, and the cache outlives one
+// declaration.
+//
+// Each worker thread keeps its own LRU map (no locking on the hot path), bounded to maxEntries; counters
+// are shared. The cache lives for one run only.
+final class CallResolutionCache {
+
+    // What a call resolved to. Failures are remembered too (with the exception class as the reason), since
+    // they are often the most expensive lookups.
+    static final class Target {
+        final String owner;     // null when resolution failed
+        final String signature;
+        final String failure;   // null when resolved
+        Target(String owner, String signature) { this(owner, signature, null); }
+        private Target(String owner, String signature, String failure) {
+            this.owner = owner; this.signature = signature; this.failure = failure;
+        }
+        static Target unresolved(String failure) { return new Target(null, null, failure); }
+        boolean resolved() { return owner != null; }
+    }
+
+    private final int maxEntries;
+    private final ThreadLocal<Map<String, Target>> local;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder uncacheable = new LongAdder();
+
+    CallResolutionCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.local = ThreadLocal.withInitial(() -> new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Target> eldest) {
+                if (size() <= CallResolutionCache.this.maxEntries) return false;
+                evictions.increment();
+                return true;
+            }
+        });
+    }
+
+    // null when the call's binding is not determined by its key alone; argTypes holds null for an argument
+    // whose type does not resolve
+    static String key(MethodCallExpr ce, List<ResolvedType> argTypes) {
+        Optional<Expression> scope = ce.getScope();
+        if (scope.isEmpty()) return null;
+        try {
+            List<String> args = new ArrayList<>(argTypes.size());
+            for (ResolvedType t : argTypes) {
+                if (t == null || hasTypeVariable(t)) return null;
+                args.add(t.describe());
+            }
+            ResolvedType scopeType = scope.get().calculateResolvedType();
+            if (hasTypeVariable(scopeType)) return null;
+            return scopeType.describe() + "#" + ce.getNameAsString() + "(" + String.join(",", args) + ")";
+        } catch (Budget.Exceeded e) {
+            throw e;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    static boolean hasTypeVariable(ResolvedType t) {
+        if (t.isTypeVariable()) return true;
+        if (t.isArray()) return hasTypeVariable(t.asArrayType().getComponentType());
+        if (t.isWildcard()) return t.asWildcard().isBounded() && hasTypeVariable(t.asWildcard().getBoundedType());
+        if (t.isReferenceType()) {
+            for (ResolvedType p : t.asReferenceType().typeParametersValues()) {
+                if (hasTypeVariable(p)) return true;
+            }
+        }
+        return false;
+    }
+
+    Target get(String key) {
+        Target t = local.get().get(key);
+        if (t != null) hits.increment();
+        else misses.increment();
+        return t;
+    }
+
+    void put(String key, Target t) {
+        local.get().put(key, t);
+    }
+
+    String stats() {
+        long h = hits.sum(), m = misses.sum();
+        long pct = h + m == 0 ? 0 : Math.round(100.0 * h / (h + m));
+        return "call cache: " + h + " hits, " + m + " misses (" + pct + "% hit rate), "
+                + evictions.sum() + " evictions, " + uncacheable.sum() + " uncacheable";
+    }
+}
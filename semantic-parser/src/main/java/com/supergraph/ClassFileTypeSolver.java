@@ -0,0 +1,108 @@
+package com.supergraph;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory;
+import javassist.ClassPath;
+import javassist.ClassPool;
+import javassist.NotFoundException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Resolves types from compiled class files instead of loading them into this JVM as ReflectionTypeSolver
+// does: the JDK's module image (JdkImage) and dependency jars (ClasspathIndex). Sources are asked in order;
+// the first that has a class answers for it.
+//
+// Class files are read through Javassist, as JavaParser's JarTypeSolver reads jars. The sources are shared by
+// all workers; each worker's solver keeps its own ClassPool and solved declarations, which neither type is
+// safe to share.
+final class ClassFileTypeSolver implements TypeSolver {
+
+    // Where class files come from, by binary name (java.util.Map$Entry). Safe for concurrent use.
+    interface ClassFiles {
+        boolean has(String binaryName);
+
+        // null when absent
+        InputStream open(String binaryName) throws IOException;
+
+        // null when absent; Javassist only checks that a class exists through this
+        URL url(String binaryName);
+    }
+
+    private final List<ClassFiles> sources;
+    private final ClassPool pool = new ClassPool(false);
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> solved = new HashMap<>();
+    private TypeSolver parent;
+
+    ClassFileTypeSolver(List<ClassFiles> sources) {
+        this.sources = sources;
+        pool.appendClassPath(new ClassPath() {
+            @Override
+            public InputStream openClassfile(String classname) throws NotFoundException {
+                try {
+                    for (ClassFiles f : sources) {
+                        InputStream in = f.open(classname);
+                        if (in != null) return in;
+                    }
+                } catch (IOException e) {
+                    throw new NotFoundException(classname, e);
+                }
+                throw new NotFoundException(classname);
+            }
+
+            @Override
+            public URL find(String classname) {
+                for (ClassFiles f : sources) {
+                    URL u = f.url(classname);
+                    if (u != null) return u;
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        this.parent = parent;
+    }
+
+    // A nested type may be asked for with dots (java.util.Map.Entry); each trailing dot is tried as '$'
+    // in turn. Only hits are kept: a miss costs one package lookup per source.
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        SymbolReference<ResolvedReferenceTypeDeclaration> ref = solved.get(name);
+        if (ref != null) return ref;
+        for (String candidate = name; ; ) {
+            if (has(candidate)) {
+                try {
+                    ref = SymbolReference.solved(JavassistFactory.toTypeDeclaration(pool.get(candidate), getRoot()));
+                    solved.put(name, ref);
+                    return ref;
+                } catch (NotFoundException e) {
+                    return SymbolReference.unsolved();
+                }
+            }
+            int dot = candidate.lastIndexOf('.');
+            if (dot < 0) return SymbolReference.unsolved();
+            candidate = candidate.substring(0, dot) + '$' + candidate.substring(dot + 1);
+        }
+    }
+
+    private boolean has(String binaryName) {
+        for (ClassFiles f : sources) {
+            if (f.has(binaryName)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,328 @@
+package com.supergraph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// --classpath / --m2-repo: dependency jars for ClassFileTypeSolver, so calls into library types resolve.
+//
+// Each jar gets an index of the classes and packages it holds, sorted, built once by listing the jar and kept
+// under --cache-dir (classpath/v<VERSION>/), keyed by the jar's path, size and modification time. Later runs
+// memory-map the index files and never open a jar until a class in it is needed; only the package tables are
+// read at startup, into one package -> jars map. Without --cache-dir the indexes are built in memory every run.
+//
+// Loaded jars (index and, once opened, ZipFile) are kept for the life of the JVM under the same key, so the
+// server reuses them across requests instead of leaving a file descriptor per jar and request behind. A jar that
+// changed on disk replaces its entry, and the old ZipFile is closed.
+//
+// Index file: int magic, int version, then the package table and the class table. A table is int n,
+// int[n + 1] offsets into its blob, then the blob: n UTF-8 binary names sorted by unsigned bytes.
+final class ClasspathIndex implements ClassFileTypeSolver.ClassFiles {
+
+    // Bump whenever the index file layout changes; old files are then ignored.
+    static final String VERSION = "1";
+    private static final int MAGIC = 0x53474350; // "SGCP"
+
+    // Sorted UTF-8 names laid out as in an index file.
+    private static final class Table {
+        private final ByteBuffer buf;
+        private final int n;
+        private final int blob;
+
+        Table(ByteBuffer buf) {
+            this.buf = buf;
+            this.n = buf.getInt(0);
+            this.blob = 4 + 4 * (n + 1);
+        }
+
+        int byteSize() {
+            return blob + buf.getInt(4 + 4 * n);
+        }
+
+        String get(int i) {
+            int from = buf.getInt(4 + 4 * i), to = buf.getInt(8 + 4 * i);
+            byte[] b = new byte[to - from];
+            buf.get(blob + from, b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        boolean contains(byte[] key) {
+            int lo = 0, hi = n - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(mid, key);
+                if (c == 0) return true;
+                if (c < 0) lo = mid + 1; else hi = mid - 1;
+            }
+            return false;
+        }
+
+        private int compare(int i, byte[] key) {
+            int from = blob + buf.getInt(4 + 4 * i), len = blob + buf.getInt(8 + 4 * i) - from;
+            for (int k = 0, m = Math.min(len, key.length); k < m; k++) {
+                int c = Integer.compare(buf.get(from + k) & 0xFF, key[k] & 0xFF);
+                if (c != 0) return c;
+            }
+            return Integer.compare(len, key.length);
+        }
+
+        static void write(DataOutputStream out, List<byte[]> sorted) throws IOException {
+            out.writeInt(sorted.size());
+            int at = 0;
+            out.writeInt(at);
+            for (byte[] b : sorted) out.writeInt(at += b.length);
+            for (byte[] b : sorted) out.write(b);
+        }
+    }
+
+    private static final class Jar {
+        final Path path;
+        final String key;
+        final Table packages;
+        final Table classes;
+        private ZipFile zip; // opened on first use
+        private boolean closed; // replaced by a newer version of the jar
+
+        Jar(Path path, String key, ByteBuffer index) {
+            this.path = path;
+            this.key = key;
+            ByteBuffer b = index.duplicate();
+            this.packages = new Table(b.slice(8, b.limit() - 8));
+            int at = 8 + packages.byteSize();
+            this.classes = new Table(b.slice(at, b.limit() - at));
+        }
+
+        synchronized ZipFile zip() throws IOException {
+            if (closed) throw new IOException("changed on disk: " + path);
+            if (zip == null) zip = new ZipFile(path.toFile());
+            return zip;
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (zip == null) return;
+            try {
+                zip.close();
+            } catch (IOException ignored) {
+            }
+            zip = null;
+        }
+    }
+
+    private static final Map<Path, Jar> LOADED = new ConcurrentHashMap<>();
+
+    private final Map<String, List<Jar>> jarsByPackage = new HashMap<>();
+    private final int jars;
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger unreadable = new AtomicInteger();
+
+    // Indexes that are missing or stale are built on pool; indexDir may be null (no persistence).
+    ClasspathIndex(List<Path> jarPaths, Path indexDir, ForkJoinPool pool) throws IOException {
+        Path dir = indexDir != null ? indexDir.resolve("v" + VERSION) : null;
+        if (dir != null) Files.createDirectories(dir);
+        Jar[] loaded = new Jar[jarPaths.size()];
+        pool.invoke(new SemanticParserCli.IndexRange(0, loaded.length, i -> loaded[i] = load(jarPaths.get(i), dir)));
+        int n = 0;
+        for (Jar jar : loaded) {
+            if (jar == null) continue;
+            n++;
+            for (int i = 0; i < jar.packages.n; i++) {
+                jarsByPackage.computeIfAbsent(jar.packages.get(i), k -> new ArrayList<>(1)).add(jar);
+            }
+        }
+        this.jars = n;
+    }
+
+    @Override
+    public boolean has(String binaryName) {
+        return jarFor(binaryName) != null;
+    }
+
+    @Override
+    public InputStream open(String binaryName) throws IOException {
+        Jar jar = jarFor(binaryName);
+        if (jar == null) return null;
+        ZipFile z = jar.zip();
+        ZipEntry e = z.getEntry(entryName(binaryName));
+        return e == null ? null : z.getInputStream(e);
+    }
+
+    @Override
+    public URL url(String binaryName) {
+        Jar jar = jarFor(binaryName);
+        try {
+            return jar == null ? null : new URL("jar:" + jar.path.toUri() + "!/" + entryName(binaryName));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    String stats() {
+        return "classpath: " + jars + " jars, " + indexed.get() + " indexed"
+                + (unreadable.get() > 0 ? ", " + unreadable.get() + " unreadable" : "");
+    }
+
+    // First jar, in classpath order, holding the class.
+    private Jar jarFor(String binaryName) {
+        int dot = binaryName.lastIndexOf('.');
+        List<Jar> candidates = jarsByPackage.get(dot < 0 ? "" : binaryName.substring(0, dot));
+        if (candidates == null) return null;
+        byte[] key = binaryName.getBytes(StandardCharsets.UTF_8);
+        for (Jar jar : candidates) {
+            if (jar.classes.contains(key)) return jar;
+        }
+        return null;
+    }
+
+    private static String entryName(String binaryName) {
+        return binaryName.replace('.', '/') + ".class";
+    }
+
+    // null when the jar cannot be read
+    private Jar load(Path jar, Path dir) {
+        try {
+            String key = key(jar);
+            Jar known = LOADED.get(jar);
+            if (known != null && known.key.equals(key)) return known;
+            Jar loaded = read(jar, key, dir);
+            // another run may have loaded the same version meanwhile; its entry wins
+            return LOADED.compute(jar, (p, old) -> {
+                if (old != null && old.key.equals(key)) return old;
+                if (old != null) old.close();
+                return loaded;
+            });
+        } catch (IOException | RuntimeException e) {
+            unreadable.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Identifies one version of a jar: path, size and modification time.
+    static String key(Path jar) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(jar, BasicFileAttributes.class);
+        return jar.toAbsolutePath() + "\0" + attrs.size() + "\0" + attrs.lastModifiedTime().toMillis();
+    }
+
+    private Jar read(Path jar, String key, Path dir) throws IOException {
+        Path p = dir != null ? dir.resolve(ContentHash.SHA1.of(key.getBytes(StandardCharsets.UTF_8)) + ".idx") : null;
+        if (p != null && Files.isRegularFile(p)) {
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+                ByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (b.limit() >= 8 && b.getInt(0) == MAGIC && b.getInt(4) == Integer.parseInt(VERSION)) {
+                    return new Jar(jar, key, b);
+                }
+            }
+        }
+        byte[] index = build(jar);
+        indexed.incrementAndGet();
+        if (p != null) {
+            // write-then-rename, as ParseCache does; a failed write only costs a rebuild next run
+            try {
+                Path tmp = Files.createTempFile(dir, p.getFileName().toString(), ".tmp");
+                Files.write(tmp, index);
+                Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ignored) {
+            }
+        }
+        return new Jar(jar, key, ByteBuffer.wrap(index));
+    }
+
+    private static byte[] build(Path jar) throws IOException {
+        Set<String> classes = new HashSet<>();
+        Set<String> packages = new HashSet<>();
+        try (ZipFile z = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = z.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                // META-INF/versions/ holds multi-release variants of classes already listed
+                if (!name.endsWith(".class") || name.startsWith("META-INF/")) continue;
+                String binary = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                if (binary.endsWith("module-info") || binary.endsWith("package-info")) continue;
+                classes.add(binary);
+                int dot = binary.lastIndexOf('.');
+                packages.add(dot < 0 ? "" : binary.substring(0, dot));
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(Integer.parseInt(VERSION));
+        Table.write(out, sorted(packages));
+        Table.write(out, sorted(classes));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<byte[]> sorted(Set<String> names) {
+        List<byte[]> out = new ArrayList<>(names.size());
+        for (String s : names) out.add(s.getBytes(StandardCharsets.UTF_8));
+        out.sort(Arrays::compareUnsigned);
+        return out;
+    }
+
+    // --classpath: entries separated by the platform path separator; a directory stands for every jar in it.
+    static List<Path> classpathJars(String spec) throws IOException {
+        List<Path> out = new ArrayList<>();
+        for (String entry : spec.split(File.pathSeparator)) {
+            if (entry.isEmpty()) continue;
+            Path p = Paths.get(entry).toAbsolutePath().normalize();
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> s = Files.walk(p)) {
+                    s.filter(f -> f.toString().endsWith(".jar") && Files.isRegularFile(f)).sorted().forEach(out::add);
+                }
+            } else if (Files.isRegularFile(p)) {
+                out.add(p);
+            } else {
+                throw new SemanticParserCli.UsageException("Not a jar or directory: " + entry);
+            }
+        }
+        return out;
+    }
+
+    // --m2-repo: the main jar (no classifier) of every artifact in a Maven local repository
+    // (<group path>/<artifact>/<version>/<artifact>-<version>.jar), highest version only.
+    static List<Path> m2Jars(Path repo) throws IOException {
+        if (!Files.isDirectory(repo)) throw new SemanticParserCli.UsageException("Not a directory: " + repo);
+        Map<Path, Path> newest = new TreeMap<>(); // artifact dir -> jar
+        try (Stream<Path> s = Files.walk(repo)) {
+            for (Path jar : s.filter(f -> f.toString().endsWith(".jar")).collect(Collectors.toList())) {
+                Path versionDir = jar.getParent(), artifactDir = versionDir.getParent();
+                if (artifactDir == null) continue;
+                String version = versionDir.getFileName().toString();
+                if (!jar.getFileName().toString().equals(artifactDir.getFileName() + "-" + version + ".jar")) continue;
+                newest.merge(artifactDir, jar, (a, b) ->
+                        compareVersions(a.getParent().getFileName().toString(), version) >= 0 ? a : b);
+            }
+        }
+        return new ArrayList<>(newest.values());
+    }
+
+    // Dot- and dash-separated parts, numeric ones compared as numbers.
+    static int compareVersions(String a, String b) {
+        String[] x = a.split("[.-]"), y = b.split("[.-]");
+        for (int i = 0; i < Math.min(x.length, y.length); i++) {
+            int c = x[i].matches("\\d+") && y[i].matches("\\d+")
+                    ? new BigInteger(x[i]).compareTo(new BigInteger(y[i])) : x[i].compareTo(y[i]);
+            if (c != 0) return c;
+        }
+        return Integer.compare(x.length, y.length);
+    }
+}
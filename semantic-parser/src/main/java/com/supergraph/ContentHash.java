@@ -0,0 +1,131 @@
+package com.supergraph;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// --hash: how file_hash and body_hash (and the parse cache keys) are computed, as lowercase hex.
+//
+//   sha1   40 hex digits, the same values as before and as the Python parser's hashlib.sha1 (default)
+//   xxh64  16 hex digits of XXH64 with seed 0, in the canonical (big-endian) order xxhsum prints
+//
+// Hashes only compare within one algorithm: a graph or --baseline written with the other one sees every
+// file and method body as changed, and parse cache entries of the other one are never hit. xxh64 is not
+// collision resistant; it is meant for change detection on a trusted checkout.
+enum ContentHash {
+
+    SHA1 {
+        @Override
+        String of(ByteBuffer content) {
+            MessageDigest md = SHA1_DIGEST.get();
+            md.reset();
+            md.update(content.duplicate());
+            return hex(md.digest());
+        }
+    },
+
+    XXH64 {
+        @Override
+        String of(ByteBuffer content) {
+            long h = xxh64(content);
+            char[] out = new char[16];
+            for (int i = 15; i >= 0; i--, h >>>= 4) out[i] = HEX[(int) (h & 0xf)];
+            return new String(out);
+        }
+    };
+
+    // Hashes the remaining bytes of content; its position is left alone.
+    abstract String of(ByteBuffer content);
+
+    String of(byte[] content) {
+        return of(ByteBuffer.wrap(content));
+    }
+
+    static ContentHash named(String name) {
+        switch (name) {
+            case "sha1": return SHA1;
+            case "xxh64": return XXH64;
+            default: throw new SemanticParserCli.UsageException("Unsupported --hash: " + name + " (expected sha1 or xxh64)");
+        }
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // MessageDigest is stateful; one per worker thread instead of a provider lookup per call.
+    private static final ThreadLocal<MessageDigest> SHA1_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE has SHA-1
+        }
+    });
+
+    static String hex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            out[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(out);
+    }
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    // XXH64 (https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md), seed 0
+    static long xxh64(ByteBuffer content) {
+        ByteBuffer b = content.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int len = b.remaining(), i = 0, at = b.position();
+        long h;
+        if (len >= 32) {
+            long v1 = P1 + P2, v2 = P2, v3 = 0, v4 = -P1;
+            for (int limit = len - 32; i <= limit; i += 32) {
+                v1 = round(v1, b.getLong(at + i));
+                v2 = round(v2, b.getLong(at + i + 8));
+                v3 = round(v3, b.getLong(at + i + 16));
+                v4 = round(v4, b.getLong(at + i + 24));
+            }
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = P5;
+        }
+        h += len;
+        for (; i + 8 <= len; i += 8) {
+            h ^= round(0, b.getLong(at + i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i + 4 <= len) {
+            h ^= (b.getInt(at + i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < len; i++) {
+            h ^= (b.get(at + i) & 0xFF) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        return Long.rotateLeft(acc, 31) * P1;
+    }
+
+    private static long merge(long acc, long v) {
+        acc ^= round(0, v);
+        return acc * P1 + P4;
+    }
+}
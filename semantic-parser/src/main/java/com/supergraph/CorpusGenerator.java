@@ -0,0 +1,477 @@
+package com.supergraph;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Writes a synthetic multi-module Java project for scale testing the parser:
+//
+//   java -cp semantic-parser.jar com.supergraph.CorpusGenerator --out /tmp/corpus-10k --types 10000
+//        [--modules n] [--build maven|gradle] [--fanout n] [--seed n]
+//
+// Layout: a "common" module (BaseEntity, generic CrudRepository/AbstractService/Page) plus module-0..n-1,
+// each with model, repo, service, web and support packages. Every entity contributes seven types: the model
+// class (extending BaseEntity or the previous model of its module) with a nested Builder and Status enum,
+// a repository, a service interface, its implementation and a controller. Models hold fields of other
+// models, generic collections of them and overloaded setters; service implementations call their
+// repository and the services of the models they reference (--fanout calls per sync method, with lambdas
+// and overloads); controllers call their service. References stay within a module or point to the
+// previous one, which is also the only module dependency declared in the build files. Every module has a
+// support.Mappers class, so that simple name occurs once per module.
+//
+// Output depends only on the arguments, so a given --seed always produces the same tree.
+public final class CorpusGenerator {
+
+    static final int TYPES_PER_ENTITY = 7;
+
+    private static final String[] NOUNS = {
+            "Order", "Customer", "Invoice", "Product", "Shipment", "Account", "Payment", "Supplier",
+            "Warehouse", "Ticket", "Contract", "Employee", "Project", "Asset", "Report", "Subscription"
+    };
+
+    private final Path out;
+    private final int modules;
+    private final int entities;
+    private final String build;
+    private final int fanout;
+    private final Random rnd;
+
+    private int files;
+
+    private CorpusGenerator(Path out, int types, int modules, String build, int fanout, long seed) {
+        this.out = out;
+        this.entities = Math.max(modules, types / TYPES_PER_ENTITY);
+        this.modules = modules;
+        this.build = build;
+        this.fanout = fanout;
+        this.rnd = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> a = SemanticParserCli.parseArgs(args);
+        try {
+            Path out = Paths.get(require(a, "out")).toAbsolutePath().normalize();
+            int types = SemanticParserCli.intArg(a, "types", 1000);
+            int modules = SemanticParserCli.intArg(a, "modules", defaultModules(types));
+            String build = a.getOrDefault("build", "maven");
+            if (!build.equals("maven") && !build.equals("gradle")) {
+                throw new SemanticParserCli.UsageException("Unsupported --build: " + build + " (expected maven or gradle)");
+            }
+            int fanout = SemanticParserCli.intArg(a, "fanout", 4);
+            long seed = SemanticParserCli.intArg(a, "seed", 1);
+            int written = generate(out, types, modules, build, fanout, seed);
+            System.err.println("generated " + written + " files, " + modules + " modules (" + build + ") under " + out);
+        } catch (SemanticParserCli.UsageException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    static int defaultModules(int types) {
+        return Math.max(1, Math.min(50, types / 2000));
+    }
+
+    // Returns the number of files written.
+    static int generate(Path out, int types, int modules, String build, int fanout, long seed) throws IOException {
+        CorpusGenerator g = new CorpusGenerator(out, types, modules, build, fanout, seed);
+        g.run();
+        return g.files;
+    }
+
+    private static String require(Map<String, String> a, String k) {
+        String v = a.get(k);
+        if (v == null || v.isBlank() || v.equals("true")) throw new SemanticParserCli.UsageException("Missing required arg: --" + k);
+        return v;
+    }
+
+    private int moduleOf(int e) {
+        return (int) ((long) e * modules / entities);
+    }
+
+    private int firstOf(int module) {
+        // smallest e with moduleOf(e) == module
+        return (int) (((long) module * entities + modules - 1) / modules);
+    }
+
+    private static String name(int e) {
+        return NOUNS[e % NOUNS.length] + (e / NOUNS.length);
+    }
+
+    private static String var(int e) {
+        String n = name(e);
+        return Character.toLowerCase(n.charAt(0)) + n.substring(1);
+    }
+
+    private static String pkg(int module, String layer) {
+        return "com.acme.m" + module + "." + layer;
+    }
+
+    // An entity referenced from e: mostly from the same module, otherwise from the previous one.
+    private int pickRef(int e) {
+        int m = moduleOf(e);
+        boolean previous = m > 0 && rnd.nextInt(10) < 3;
+        int lo = firstOf(previous ? m - 1 : m);
+        int hi = firstOf(previous ? m : m + 1);
+        return lo + rnd.nextInt(hi - lo);
+    }
+
+    private void run() throws IOException {
+        writeBuild();
+        writeCommon();
+        for (int m = 0; m < modules; m++) {
+            Path src = moduleSrc("module-" + m);
+            write(src, pkg(m, "support"), "Mappers", mappers(m));
+        }
+        for (int e = 0; e < entities; e++) {
+            int m = moduleOf(e);
+            Path src = moduleSrc("module-" + m);
+            int[] refs = {pickRef(e), pickRef(e), pickRef(e)};
+            int parent = (e > firstOf(m) && (e - firstOf(m)) % 4 != 0) ? e - 1 : -1;
+            write(src, pkg(m, "model"), name(e), model(e, parent, refs));
+            write(src, pkg(m, "repo"), name(e) + "Repository", repository(e));
+            write(src, pkg(m, "service"), name(e) + "Service", serviceApi(e));
+            write(src, pkg(m, "service"), name(e) + "ServiceImpl", serviceImpl(e, refs));
+            write(src, pkg(m, "web"), name(e) + "Controller", controller(e));
+        }
+    }
+
+    private Path moduleSrc(String module) {
+        return out.resolve(module).resolve("src/main/java");
+    }
+
+    private void write(Path src, String pkg, String type, String content) throws IOException {
+        Path p = src.resolve(pkg.replace('.', '/')).resolve(type + ".java");
+        writeFile(p, content);
+    }
+
+    private void writeFile(Path p, String content) throws IOException {
+        Files.createDirectories(p.getParent());
+        Files.writeString(p, content, StandardCharsets.UTF_8);
+        files++;
+    }
+
+    private void writeBuild() throws IOException {
+        if (build.equals("gradle")) {
+            StringBuilder settings = new StringBuilder("rootProject.name = 'synthetic-corpus'\n\ninclude 'common'\n");
+            for (int m = 0; m < modules; m++) settings.append("include 'module-").append(m).append("'\n");
+            writeFile(out.resolve("settings.gradle"), settings.toString());
+            writeFile(out.resolve("build.gradle"), "subprojects {\n    apply plugin: 'java-library'\n\n"
+                    + "    java {\n        toolchain { languageVersion = JavaLanguageVersion.of(17) }\n    }\n}\n");
+            writeFile(out.resolve("common/build.gradle"), "// no dependencies\n");
+            for (int m = 0; m < modules; m++) {
+                StringBuilder b = new StringBuilder("dependencies {\n    api project(':common')\n");
+                if (m > 0) b.append("    api project(':module-").append(m - 1).append("')\n");
+                writeFile(out.resolve("module-" + m + "/build.gradle"), b.append("}\n").toString());
+            }
+            return;
+        }
+        StringBuilder root = new StringBuilder();
+        root.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <groupId>com.acme</groupId>\n")
+                .append("  <artifactId>synthetic-corpus</artifactId>\n")
+                .append("  <version>1.0.0</version>\n")
+                .append("  <packaging>pom</packaging>\n")
+                .append("  <properties>\n    <maven.compiler.release>17</maven.compiler.release>\n  </properties>\n")
+                .append("  <modules>\n    <module>common</module>\n");
+        for (int m = 0; m < modules; m++) root.append("    <module>module-").append(m).append("</module>\n");
+        root.append("  </modules>\n</project>\n");
+        writeFile(out.resolve("pom.xml"), root.toString());
+        writeFile(out.resolve("common/pom.xml"), modulePom("common", List.of()));
+        for (int m = 0; m < modules; m++) {
+            List<String> deps = m > 0 ? List.of("common", "module-" + (m - 1)) : List.of("common");
+            writeFile(out.resolve("module-" + m + "/pom.xml"), modulePom("module-" + m, deps));
+        }
+    }
+
+    private static String modulePom(String artifact, List<String> deps) {
+        StringBuilder b = new StringBuilder();
+        b.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <parent>\n    <groupId>com.acme</groupId>\n    <artifactId>synthetic-corpus</artifactId>\n")
+                .append("    <version>1.0.0</version>\n  </parent>\n")
+                .append("  <artifactId>").append(artifact).append("</artifactId>\n");
+        if (!deps.isEmpty()) {
+            b.append("  <dependencies>\n");
+            for (String d : deps) {
+                b.append("    <dependency>\n      <groupId>com.acme</groupId>\n      <artifactId>").append(d)
+                        .append("</artifactId>\n      <version>${project.version}</version>\n    </dependency>\n");
+            }
+            b.append("  </dependencies>\n");
+        }
+        return b.append("</project>\n").toString();
+    }
+
+    private void writeCommon() throws IOException {
+        Path src = moduleSrc("common");
+        String p = "com.acme.common";
+        write(src, p, "BaseEntity", "package " + p + ";\n\n"
+                + "public abstract class BaseEntity {\n"
+                + "    private Long id;\n"
+                + "    private long version;\n\n"
+                + "    public Long getId() { return id; }\n"
+                + "    public void setId(Long id) { this.id = id; }\n"
+                + "    public long getVersion() { return version; }\n"
+                + "    public void touch() { version++; }\n"
+                + "}\n");
+        write(src, p, "CrudRepository", "package " + p + ";\n\n"
+                + "import java.util.List;\n"
+                + "import java.util.Optional;\n\n"
+                + "public interface CrudRepository<T extends BaseEntity, ID> {\n"
+                + "    T save(T entity);\n"
+                + "    Optional<T> findById(ID id);\n"
+                + "    List<T> findAll();\n"
+                + "    void delete(T entity);\n"
+                + "}\n");
+        write(src, p, "Page", "package " + p + ";\n\n"
+                + "import java.util.List;\n\n"
+                + "public final class Page<T> {\n"
+                + "    private final List<T> items;\n"
+                + "    private final int number;\n\n"
+                + "    private Page(List<T> items, int number) { this.items = items; this.number = number; }\n\n"
+                + "    public static <T> Page<T> of(List<T> all, int number, int size) {\n"
+                + "        int from = Math.min(all.size(), number * size);\n"
+                + "        return new Page<>(all.subList(from, Math.min(all.size(), from + size)), number);\n"
+                + "    }\n\n"
+                + "    public List<T> getItems() { return items; }\n"
+                + "    public int getNumber() { return number; }\n"
+                + "    public int size() { return items.size(); }\n"
+                + "}\n");
+        write(src, p, "AbstractService", "package " + p + ";\n\n"
+                + "import java.util.Optional;\n\n"
+                + "public abstract class AbstractService<T extends BaseEntity> {\n"
+                + "    protected T require(Optional<T> found) {\n"
+                + "        return found.orElseThrow(() -> new IllegalStateException(\"not found\"));\n"
+                + "    }\n\n"
+                + "    protected void log(BaseEntity entity) {\n"
+                + "        System.out.println(getClass().getSimpleName() + \" \" + entity.getId());\n"
+                + "    }\n\n"
+                + "    protected void log(BaseEntity entity, String action) {\n"
+                + "        System.out.println(action + \" \" + entity.getId());\n"
+                + "    }\n"
+                + "}\n");
+    }
+
+    private String mappers(int m) {
+        return "package " + pkg(m, "support") + ";\n\n"
+                + "import com.acme.common.BaseEntity;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.List;\n\n"
+                + "public final class Mappers {\n"
+                + "    private Mappers() {}\n\n"
+                + "    public static <T extends BaseEntity> List<Long> ids(List<T> items) {\n"
+                + "        List<Long> out = new ArrayList<>();\n"
+                + "        for (T item : items) out.add(item.getId());\n"
+                + "        return out;\n"
+                + "    }\n\n"
+                + "    public static <T extends BaseEntity> T first(List<T> items) {\n"
+                + "        return items.isEmpty() ? null : items.get(0);\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    // imports for the given models, skipping those in the current package
+    private void importModels(StringBuilder b, String currentPkg, int[] es) {
+        Set<String> seen = new TreeSet<>();
+        for (int x : es) {
+            String p = pkg(moduleOf(x), "model");
+            if (!p.equals(currentPkg)) seen.add(p + "." + name(x));
+        }
+        for (String s : seen) b.append("import ").append(s).append(";\n");
+    }
+
+    private String model(int e, int parent, int[] refs) {
+        int m = moduleOf(e);
+        String n = name(e);
+        String p = pkg(m, "model");
+        String r0 = name(refs[0]), r1 = name(refs[1]), r2 = name(refs[2]);
+        StringBuilder b = new StringBuilder("package ").append(p).append(";\n\n");
+        if (parent < 0) b.append("import com.acme.common.BaseEntity;\n");
+        importModels(b, p, refs);
+        b.append("import java.util.ArrayList;\n")
+                .append("import java.util.HashMap;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.Map;\n\n");
+        b.append("public class ").append(n).append(" extends ").append(parent < 0 ? "BaseEntity" : name(parent)).append(" {\n\n")
+                .append("    public enum Status { NEW, ACTIVE, RETIRED }\n\n")
+                .append("    private String name;\n")
+                .append("    private int rank;\n")
+                .append("    private Status status = Status.NEW;\n")
+                .append("    private ").append(r0).append(" primary;\n")
+                .append("    private List<").append(r1).append("> items = new ArrayList<>();\n")
+                .append("    private Map<String, ").append(r2).append("> byKey = new HashMap<>();\n\n")
+                .append("    public String getName() { return name; }\n")
+                .append("    public void setName(String name) { this.name = name; }\n")
+                .append("    public void setName(String first, String last) { setName(first + \" \" + last); }\n")
+                .append("    public void setName(CharSequence name) { setName(name.toString()); }\n")
+                .append("    public int getRank() { return rank; }\n")
+                .append("    public void setRank(int rank) { this.rank = rank; }\n")
+                .append("    public Status getStatus() { return status; }\n")
+                .append("    public void setStatus(Status status) { this.status = status; }\n")
+                .append("    public ").append(r0).append(" getPrimary() { return primary; }\n")
+                .append("    public void setPrimary(").append(r0).append(" primary) { this.primary = primary; }\n")
+                .append("    public List<").append(r1).append("> getItems() { return items; }\n")
+                .append("    public void addItem(").append(r1).append(" item) { items.add(item); }\n")
+                .append("    public void addItem(").append(r1).append(" item, int copies) {\n")
+                .append("        for (int i = 0; i < copies; i++) addItem(item);\n")
+                .append("    }\n")
+                .append("    public ").append(r2).append(" get(String key) { return byKey.get(key); }\n")
+                .append("    public void put(String key, ").append(r2).append(" value) { byKey.put(key, value); }\n\n")
+                .append("    public static class Builder {\n")
+                .append("        private final ").append(n).append(" target = new ").append(n).append("();\n\n")
+                .append("        public Builder name(String name) { target.setName(name); return this; }\n")
+                .append("        public Builder rank(int rank) { target.setRank(rank); return this; }\n")
+                .append("        public Builder status(Status status) { target.setStatus(status); return this; }\n")
+                .append("        public Builder primary(").append(r0).append(" primary) { target.setPrimary(primary); return this; }\n")
+                .append("        public ").append(n).append(" build() { return target; }\n")
+                .append("    }\n")
+                .append("}\n");
+        return b.toString();
+    }
+
+    private String repository(int e) {
+        int m = moduleOf(e);
+        String n = name(e);
+        return "package " + pkg(m, "repo") + ";\n\n"
+                + "import com.acme.common.CrudRepository;\n"
+                + "import " + pkg(m, "model") + "." + n + ";\n"
+                + "import java.util.List;\n\n"
+                + "public interface " + n + "Repository extends CrudRepository<" + n + ", Long> {\n"
+                + "    List<" + n + "> findByName(String name);\n"
+                + "    List<" + n + "> findByStatus(" + n + ".Status status);\n"
+                + "    long countByRank(int rank);\n"
+                + "}\n";
+    }
+
+    private String serviceApi(int e) {
+        int m = moduleOf(e);
+        String n = name(e);
+        return "package " + pkg(m, "service") + ";\n\n"
+                + "import com.acme.common.Page;\n"
+                + "import " + pkg(m, "model") + "." + n + ";\n"
+                + "import java.util.List;\n"
+                + "import java.util.Optional;\n\n"
+                + "public interface " + n + "Service {\n"
+                + "    " + n + " create(String name);\n"
+                + "    " + n + " create(String name, int rank);\n"
+                + "    Optional<" + n + "> find(Long id);\n"
+                + "    List<" + n + "> find(String name);\n"
+                + "    Page<" + n + "> page(int number, int size);\n"
+                + "    int promote(int minRank);\n"
+                + "    int sync(Long id);\n"
+                + "}\n";
+    }
+
+    private String serviceImpl(int e, int[] refs) {
+        int m = moduleOf(e);
+        String n = name(e);
+        String p = pkg(m, "service");
+        int[] deps = Arrays.stream(refs).filter(x -> x != e).distinct().toArray();
+
+        StringBuilder b = new StringBuilder("package ").append(p).append(";\n\n");
+        b.append("import com.acme.common.AbstractService;\n")
+                .append("import com.acme.common.Page;\n");
+        int[] models = Arrays.copyOf(deps, deps.length + 1);
+        models[deps.length] = e;
+        importModels(b, p, models);
+        b.append("import ").append(pkg(m, "repo")).append(".").append(n).append("Repository;\n");
+        Set<String> serviceImports = new TreeSet<>();
+        for (int d : deps) {
+            if (moduleOf(d) != m) serviceImports.add(pkg(moduleOf(d), "service") + "." + name(d) + "Service");
+        }
+        for (String s : serviceImports) b.append("import ").append(s).append(";\n");
+        b.append("import java.util.List;\n")
+                .append("import java.util.Optional;\n\n");
+
+        b.append("public class ").append(n).append("ServiceImpl extends AbstractService<").append(n)
+                .append("> implements ").append(n).append("Service {\n\n")
+                .append("    private final ").append(n).append("Repository repository;\n");
+        for (int d : deps) b.append("    private final ").append(name(d)).append("Service ").append(var(d)).append("Service;\n");
+        b.append("\n    public ").append(n).append("ServiceImpl(").append(n).append("Repository repository");
+        for (int d : deps) b.append(", ").append(name(d)).append("Service ").append(var(d)).append("Service");
+        b.append(") {\n        this.repository = repository;\n");
+        for (int d : deps) b.append("        this.").append(var(d)).append("Service = ").append(var(d)).append("Service;\n");
+        b.append("    }\n\n");
+
+        b.append("    @Override\n    public ").append(n).append(" create(String name) {\n")
+                .append("        return create(name, 0);\n    }\n\n")
+                .append("    @Override\n    public ").append(n).append(" create(String name, int rank) {\n")
+                .append("        ").append(n).append(" created = new ").append(n).append(".Builder().name(name.trim()).rank(rank).status(")
+                .append(n).append(".Status.ACTIVE).build();\n")
+                .append("        log(created, \"create\");\n")
+                .append("        return repository.save(created);\n    }\n\n")
+                .append("    @Override\n    public Optional<").append(n).append("> find(Long id) {\n")
+                .append("        return repository.findById(id);\n    }\n\n")
+                .append("    @Override\n    public List<").append(n).append("> find(String name) {\n")
+                .append("        List<").append(n).append("> found = repository.findByName(name);\n")
+                .append("        return found.isEmpty() ? repository.findByName(name.toLowerCase()) : found;\n    }\n\n")
+                .append("    @Override\n    public Page<").append(n).append("> page(int number, int size) {\n")
+                .append("        return Page.of(repository.findAll(), number, size);\n    }\n\n")
+                .append("    @Override\n    public int promote(int minRank) {\n")
+                .append("        int promoted = 0;\n")
+                .append("        for (").append(n).append(" x : repository.findAll()) {\n")
+                .append("            if (x.getRank() <= minRank) continue;\n")
+                .append("            x.setRank(x.getRank() + 1);\n")
+                .append("            x.touch();\n")
+                .append("            repository.save(x);\n")
+                .append("            promoted++;\n")
+                .append("        }\n")
+                .append("        return promoted;\n    }\n\n");
+
+        b.append("    @Override\n    public int sync(Long id) {\n")
+                .append("        ").append(n).append(" self = require(repository.findById(id));\n")
+                .append("        int total = 0;\n");
+        for (int k = 0; k < fanout && deps.length > 0; k++) {
+            int d = deps[k % deps.length];
+            String s = var(d) + "Service";
+            switch (rnd.nextInt(5)) {
+                case 0:
+                    b.append("        ").append(s).append(".find(self.getName()).forEach(x -> x.setRank(self.getRank()));\n");
+                    break;
+                case 1:
+                    b.append("        ").append(s).append(".find(self.getId()).ifPresent(x -> log(x));\n");
+                    break;
+                case 2:
+                    b.append("        total += ").append(s).append(".promote(self.getRank());\n");
+                    break;
+                case 3:
+                    b.append("        Page<").append(name(d)).append("> page").append(k).append(" = ").append(s)
+                            .append(".page(0, 20);\n")
+                            .append("        total += page").append(k).append(".size();\n");
+                    break;
+                default:
+                    b.append("        ").append(s).append(".create(self.getName() + \"-copy\", self.getRank());\n");
+            }
+        }
+        b.append("        repository.save(self);\n")
+                .append("        return total;\n    }\n")
+                .append("}\n");
+        return b.toString();
+    }
+
+    private String controller(int e) {
+        int m = moduleOf(e);
+        String n = name(e);
+        return "package " + pkg(m, "web") + ";\n\n"
+                + "import com.acme.common.Page;\n"
+                + "import " + pkg(m, "model") + "." + n + ";\n"
+                + "import " + pkg(m, "service") + "." + n + "Service;\n"
+                + "import " + pkg(m, "support") + ".Mappers;\n"
+                + "import java.util.List;\n"
+                + "import java.util.Optional;\n\n"
+                + "public class " + n + "Controller {\n"
+                + "    private final " + n + "Service service;\n\n"
+                + "    public " + n + "Controller(" + n + "Service service) { this.service = service; }\n\n"
+                + "    public " + n + " post(String name) { return service.create(name); }\n"
+                + "    public " + n + " post(String name, int rank) { return service.create(name, rank); }\n"
+                + "    public Optional<" + n + "> get(Long id) { return service.find(id); }\n"
+                + "    public List<" + n + "> search(String name) { return service.find(name); }\n"
+                + "    public Page<" + n + "> list(int page) { return service.page(page, 50); }\n"
+                + "    public List<Long> ids(String name) { return Mappers.ids(service.find(name)); }\n"
+                + "    public int sync(Long id) { return service.sync(id); }\n"
+                + "}\n";
+    }
+}
@@ -0,0 +1,298 @@
+package com.supergraph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Finds the .java files to parse, one fork/join task per directory, and leaves out what would only be parsed
+// as a duplicate or a build artifact:
+//
+//   - paths matched by .gitignore files (any level) and .git/info/exclude, with git's precedence: the deepest
+//     file and, within a file, the last matching line win; a directory that is ignored is not entered
+//   - .git, .hg, .svn and node_modules, and target, build, out and .gradle next to a pom.xml or build.gradle(.kts)
+//   - with --generated dirs (default), generated-sources and generated-test-sources directories; with
+//     --generated all, also files whose first type is annotated @Generated
+//   - --exclude globs (files and directories) and, when given, files not matching an --include glob; both are
+//     relative to the root, e.g. **/legacy/** or com/acme/**
+//
+// --no-ignore drops the first two, --generated keep the third; each leaves the others in place, so --no-ignore
+// alone still skips generated-sources. Symbolic links to directories are not followed.
+// Files come back sorted, so the order no longer depends on the file system.
+final class FileScanner {
+
+    enum Generated {
+        KEEP, DIRS, ALL;
+
+        static Generated named(String name) {
+            switch (name) {
+                case "keep": return KEEP;
+                case "dirs": return DIRS;
+                case "all": return ALL;
+                default: throw new SemanticParserCli.UsageException("Unsupported --generated: " + name + " (expected keep, dirs or all)");
+            }
+        }
+    }
+
+    private static final Set<String> ALWAYS_SKIPPED = Set.of(".git", ".hg", ".svn", "node_modules");
+    private static final Set<String> BUILD_OUTPUT = Set.of("target", "build", "out", ".gradle");
+    private static final Set<String> BUILD_FILES = Set.of("pom.xml", "build.gradle", "build.gradle.kts");
+    private static final Set<String> GENERATED_DIRS = Set.of("generated-sources", "generated-test-sources");
+    private static final Pattern GENERATED_ANNOTATION =
+            Pattern.compile("@(?:javax\\.annotation\\.(?:processing\\.)?|jakarta\\.annotation\\.)?Generated\\b");
+    private static final Pattern TYPE_START = Pattern.compile("\\b(?:class|interface|enum|record)\\s+\\w");
+    private static final int GENERATED_PROBE_BYTES = 64 * 1024;
+
+    private final boolean ignoreFiles;
+    private final List<PathMatcher> include;
+    private final List<PathMatcher> exclude;
+    private final Generated generated;
+
+    final LongAdder dirs = new LongAdder();
+    final LongAdder files = new LongAdder();
+    final LongAdder skippedDirs = new LongAdder();
+    final LongAdder skippedFiles = new LongAdder(); // .java files only
+
+    FileScanner(boolean ignoreFiles, List<PathMatcher> include, List<PathMatcher> exclude, Generated generated) {
+        this.ignoreFiles = ignoreFiles;
+        this.include = include;
+        this.exclude = exclude;
+        this.generated = generated;
+    }
+
+    // The defaults of the command line.
+    static FileScanner standard() {
+        return new FileScanner(true, List.of(), List.of(), Generated.DIRS);
+    }
+
+    // --include / --exclude: comma-separated globs
+    static List<PathMatcher> globs(String flag, String spec) {
+        if (spec == null) return List.of();
+        List<PathMatcher> out = new ArrayList<>();
+        for (String g : spec.split(",")) {
+            if (g.isBlank()) continue;
+            try {
+                out.add(FileSystems.getDefault().getPathMatcher("glob:" + g.trim()));
+            } catch (PatternSyntaxException e) {
+                throw new SemanticParserCli.UsageException("Invalid glob for --" + flag + ": " + g);
+            }
+        }
+        return out;
+    }
+
+    List<Path> scan(Path root, ForkJoinPool pool) {
+        Queue<Path> found = new ConcurrentLinkedQueue<>();
+        Frame top = ignoreFiles ? Frame.push(null, root, root.resolve(".git").resolve("info").resolve("exclude")) : null;
+        pool.invoke(new Dir(root, root, top, found));
+        List<Path> out = new ArrayList<>(found);
+        Collections.sort(out);
+        return out;
+    }
+
+    String stats() {
+        return "discover: " + files.sum() + " files in " + dirs.sum() + " directories, skipped "
+                + skippedFiles.sum() + " files and " + skippedDirs.sum() + " directories";
+    }
+
+    private final class Dir extends RecursiveAction {
+        private final Path root;
+        private final Path dir;
+        private final Frame frame;
+        private final Queue<Path> found;
+
+        Dir(Path root, Path dir, Frame frame, Queue<Path> found) {
+            this.root = root; this.dir = dir; this.frame = frame; this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            dirs.increment();
+            List<Path> entries = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) entries.add(p);
+            } catch (IOException e) {
+                return; // unreadable, as Files.walk would have failed on it
+            }
+            Frame f = ignoreFiles ? Frame.push(frame, dir, dir.resolve(".gitignore")) : null;
+            boolean buildDir = ignoreFiles && entries.stream().anyMatch(p -> BUILD_FILES.contains(p.getFileName().toString()));
+
+            List<Dir> subdirs = new ArrayList<>();
+            for (Path p : entries) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isSymbolicLink()) {
+                        attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                        if (attrs.isDirectory()) continue;
+                    }
+                } catch (IOException e) {
+                    continue;
+                }
+                String name = p.getFileName().toString();
+                if (attrs.isDirectory()) {
+                    if (skipDir(p, name, buildDir, f)) {
+                        skippedDirs.increment();
+                    } else {
+                        subdirs.add(new Dir(root, p, f, found));
+                    }
+                } else if (attrs.isRegularFile() && name.toLowerCase().endsWith(".java")) {
+                    if (skipFile(p, f)) {
+                        skippedFiles.increment();
+                    } else {
+                        files.increment();
+                        found.add(p);
+                    }
+                }
+            }
+            invokeAll(subdirs);
+        }
+
+        private boolean skipDir(Path p, String name, boolean buildDir, Frame f) {
+            if (ignoreFiles) {
+                if (ALWAYS_SKIPPED.contains(name) || buildDir && BUILD_OUTPUT.contains(name)) return true;
+                if (Frame.ignored(f, p, true)) return true;
+            }
+            if (generated != Generated.KEEP && GENERATED_DIRS.contains(name)) return true;
+            return matchesAny(exclude, root.relativize(p));
+        }
+
+        private boolean skipFile(Path p, Frame f) {
+            if (ignoreFiles && Frame.ignored(f, p, false)) return true;
+            Path rel = root.relativize(p);
+            if (matchesAny(exclude, rel)) return true;
+            if (!include.isEmpty() && !matchesAny(include, rel)) return true;
+            return generated == Generated.ALL && isGenerated(p);
+        }
+    }
+
+    private static boolean matchesAny(List<PathMatcher> globs, Path rel) {
+        for (PathMatcher m : globs) {
+            if (m.matches(rel)) return true;
+        }
+        return false;
+    }
+
+    // @Generated ahead of the first type declaration; only the start of the file is read.
+    static boolean isGenerated(Path file) {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes(GENERATED_PROBE_BYTES);
+        } catch (IOException e) {
+            return false;
+        }
+        String s = new String(head, StandardCharsets.ISO_8859_1);
+        Matcher a = GENERATED_ANNOTATION.matcher(s);
+        if (!a.find()) return false;
+        Matcher t = TYPE_START.matcher(s);
+        return !t.find() || a.start() < t.start();
+    }
+
+    // One ignore file's rules, chained to those of the directories above; immutable, so subtasks share it.
+    private static final class Frame {
+        final Frame parent;
+        final Path base;
+        final List<Rule> rules;
+
+        private Frame(Frame parent, Path base, List<Rule> rules) {
+            this.parent = parent; this.base = base; this.rules = rules;
+        }
+
+        // parent itself when the file is missing or has no rules
+        static Frame push(Frame parent, Path base, Path ignoreFile) {
+            if (!Files.isRegularFile(ignoreFile)) return parent;
+            List<Rule> rules = new ArrayList<>();
+            try {
+                for (String line : Files.readAllLines(ignoreFile, StandardCharsets.UTF_8)) {
+                    Rule r = Rule.parse(line);
+                    if (r != null) rules.add(r);
+                }
+            } catch (IOException e) {
+                return parent;
+            }
+            return rules.isEmpty() ? parent : new Frame(parent, base, rules);
+        }
+
+        static boolean ignored(Frame f, Path p, boolean dir) {
+            for (; f != null; f = f.parent) {
+                String rel = f.base.relativize(p).toString().replace(p.getFileSystem().getSeparator(), "/");
+                for (int i = f.rules.size() - 1; i >= 0; i--) {
+                    Rule r = f.rules.get(i);
+                    if ((!r.dirOnly || dir) && r.pattern.matcher(rel).matches()) return !r.negate;
+                }
+            }
+            return false;
+        }
+    }
+
+    // One .gitignore line: a pattern containing a slash is anchored to the file's directory, one without
+    // matches at any depth below it; a trailing slash matches directories only, a leading ! re-includes.
+    private static final class Rule {
+        final Pattern pattern;
+        final boolean negate;
+        final boolean dirOnly;
+
+        private Rule(Pattern pattern, boolean negate, boolean dirOnly) {
+            this.pattern = pattern; this.negate = negate; this.dirOnly = dirOnly;
+        }
+
+        static Rule parse(String line) {
+            String s = line.stripTrailing();
+            if (s.isEmpty() || s.startsWith("#")) return null;
+            boolean negate = s.startsWith("!");
+            if (negate) s = s.substring(1);
+            else if (s.startsWith("\\#") || s.startsWith("\\!")) s = s.substring(1);
+            boolean dirOnly = s.endsWith("/");
+            if (dirOnly) s = s.substring(0, s.length() - 1);
+            if (s.isEmpty()) return null;
+            boolean anchored = s.contains("/");
+            if (s.startsWith("/")) s = s.substring(1);
+            try {
+                return new Rule(Pattern.compile((anchored ? "" : "(?:.*/)?") + regex(s)), negate, dirOnly);
+            } catch (PatternSyntaxException e) {
+                return null;
+            }
+        }
+
+        private static String regex(String glob) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        if (i + 2 < glob.length() && glob.charAt(i + 2) == '/') {
+                            sb.append("(?:.*/)?");
+                            i += 2;
+                        } else {
+                            sb.append(".*");
+                            i++;
+                        }
+                    } else {
+                        sb.append("[^/]*");
+                    }
+                } else if (c == '?') {
+                    sb.append("[^/]");
+                } else if (c == '[' && glob.indexOf(']', i + 1) > i + 1) {
+                    int end = glob.indexOf(']', i + 1);
+                    String set = glob.substring(i + 1, end).replace("\\", "\\\\");
+                    sb.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+                    i = end;
+                } else if (c == '\\' && i + 1 < glob.length()) {
+                    sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                } else {
+                    if ("\\.^$|()+{}[]".indexOf(c) >= 0) sb.append('\\');
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
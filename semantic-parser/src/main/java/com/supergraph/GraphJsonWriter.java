@@ -0,0 +1,109 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Writes a Graph through a streaming JsonGenerator, one row at a time, so serialization never holds
+// more than the generator's buffer on top of the graph itself (no document tree, no String copy).
+final class GraphJsonWriter {
+
+    private GraphJsonWriter() {}
+
+    static void write(JsonGenerator gen, SemanticParserCli.Graph g) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("project_name", g.project_name);
+        gen.writeStringField("repo_id", g.repo_id);
+        writeRows(gen, "types", g.types);
+        writeRows(gen, "methods", g.methods);
+        writeRows(gen, "fields", g.fields);
+        writeEdges(gen, g, "dependencies");
+        // keep compatibility with existing GraphBuilder by using keys "extends" and "implements"
+        writeEdges(gen, g, "extends");
+        writeEdges(gen, g, "implements");
+        writeEdges(gen, g, "calls");
+        writeRows(gen, "degraded", g.degraded);
+        gen.writeEndObject();
+        gen.flush();
+    }
+
+    private static void writeRows(JsonGenerator gen, String name, List<Map<String, Object>> rows) throws IOException {
+        gen.writeArrayFieldStart(name);
+        for (Map<String, Object> row : rows) writeValue(gen, row);
+        gen.writeEndArray();
+    }
+
+    private static void writeEdges(JsonGenerator gen, SemanticParserCli.Graph g, String section) throws IOException {
+        gen.writeArrayFieldStart(section);
+        for (int i = 0, n = g.edges(section).size(); i < n; i++) {
+            gen.writeStartObject();
+            writeEdgeFields(gen, g, section, i);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    // Fields of edge row i, names resolved from the graph's symbol table; the inverse is Graph.addEdgeRow.
+    static void writeEdgeFields(JsonGenerator gen, SemanticParserCli.Graph g, String section, int i) throws IOException {
+        IntRows rows = g.edges(section);
+        gen.writeStringField("project_name", g.project_name);
+        gen.writeStringField("repo_id", g.repo_id);
+        switch (section) {
+            case "dependencies":
+                gen.writeStringField("from_fqn", g.name(rows.get(i, 0)));
+                gen.writeStringField("to_fqn", g.name(rows.get(i, 1)));
+                gen.writeStringField("to_simple", SemanticParserCli.simpleName(g.name(rows.get(i, 1))));
+                gen.writeStringField("via", g.name(rows.get(i, 2)));
+                gen.writeStringField("file", g.name(rows.get(i, 3)));
+                break;
+            case "extends":
+            case "implements":
+                gen.writeStringField("child_fqn", g.name(rows.get(i, 0)));
+                gen.writeStringField(section.equals("extends") ? "parent_ref" : "iface_ref", g.name(rows.get(i, 1)));
+                break;
+            default:
+                gen.writeStringField("from_owner_fqn", g.name(rows.get(i, 0)));
+                gen.writeStringField("from_signature", g.name(rows.get(i, 1)));
+                gen.writeStringField("to_owner_fqn", g.name(rows.get(i, 2)));
+                gen.writeStringField("to_signature", g.name(rows.get(i, 3)));
+                gen.writeStringField("file", g.name(rows.get(i, 4)));
+                int first = rows.get(i, 5), end = first + rows.get(i, 6);
+                gen.writeArrayFieldStart("arg_exprs");
+                for (int k = first; k < end; k++) gen.writeString(g.name(g.callArgs.get(k, 0)));
+                gen.writeEndArray();
+                gen.writeArrayFieldStart("arg_types");
+                for (int k = first; k < end; k++) gen.writeString(g.name(g.callArgs.get(k, 1)));
+                gen.writeEndArray();
+        }
+    }
+
+    static void writeValue(JsonGenerator gen, Object v) throws IOException {
+        if (v == null) {
+            gen.writeNull();
+        } else if (v instanceof String) {
+            gen.writeString((String) v);
+        } else if (v instanceof Integer) {
+            gen.writeNumber((Integer) v);
+        } else if (v instanceof Long) {
+            gen.writeNumber((Long) v);
+        } else if (v instanceof Boolean) {
+            gen.writeBoolean((Boolean) v);
+        } else if (v instanceof Map) {
+            gen.writeStartObject();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                gen.writeFieldName(String.valueOf(e.getKey()));
+                writeValue(gen, e.getValue());
+            }
+            gen.writeEndObject();
+        } else if (v instanceof Collection) {
+            gen.writeStartArray();
+            for (Object x : (Collection<?>) v) writeValue(gen, x);
+            gen.writeEndArray();
+        } else {
+            gen.writeString(String.valueOf(v));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.supergraph;
+
+import java.util.Arrays;
+
+// Fixed-width rows of ints packed into one growing array: row i is data[i * width .. (i + 1) * width).
+//
+// With a key width, the leading keyWidth columns identify a row and add() drops a row whose key is already
+// present (first one wins, order is kept). The index is an open-addressing table of row numbers hashed over
+// the key columns, so a duplicate check allocates nothing.
+final class IntRows {
+
+    final int width;
+    private final int keyWidth;
+    private int[] data;
+    private int size;
+    private int[] slots; // row numbers, -1 = empty; null without a key
+
+    IntRows(int width) {
+        this(width, 0);
+    }
+
+    IntRows(int width, int keyWidth) {
+        this.width = width;
+        this.keyWidth = keyWidth;
+        this.data = new int[width * 16];
+        if (keyWidth > 0) slots = emptySlots(32);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int row, int col) {
+        return data[row * width + col];
+    }
+
+    // Changing a key column leaves the index stale until reindex().
+    void set(int row, int col, int value) {
+        data[row * width + col] = value;
+    }
+
+    // Appends a row with the given leading columns (the rest stay 0) and returns its index, or -1 when a row
+    // with the same key is already there.
+    int add(int a, int b) {
+        int base = grow();
+        data[base] = a;
+        data[base + 1] = b;
+        return commit();
+    }
+
+    int add(int a, int b, int c, int d) {
+        int base = grow();
+        data[base] = a;
+        data[base + 1] = b;
+        data[base + 2] = c;
+        data[base + 3] = d;
+        return commit();
+    }
+
+    int add(int a, int b, int c, int d, int e) {
+        int base = grow();
+        data[base] = a;
+        data[base + 1] = b;
+        data[base + 2] = c;
+        data[base + 3] = d;
+        data[base + 4] = e;
+        return commit();
+    }
+
+    // Rebuilds the index after set() changed key columns; rows that now repeat an earlier key are dropped.
+    void reindex() {
+        if (slots != null) rehash(slots.length);
+    }
+
+    // The row just written past the end becomes row `size` unless its key is taken.
+    private int commit() {
+        if (slots == null) return size++;
+        if ((size + 1) * 2 > slots.length) rehash(slots.length * 2);
+        int h = slot(size);
+        if (slots[h] >= 0) return -1;
+        slots[h] = size;
+        return size++;
+    }
+
+    private void rehash(int capacity) {
+        slots = emptySlots(capacity);
+        int out = 0;
+        for (int i = 0; i < size; i++) {
+            int h = slot(i);
+            if (slots[h] >= 0) continue;
+            if (out != i) System.arraycopy(data, i * width, data, out * width, width);
+            slots[h] = out++;
+        }
+        size = out;
+    }
+
+    // The slot of the indexed row whose key equals row's, else the empty slot where row belongs.
+    private int slot(int row) {
+        int mask = slots.length - 1;
+        for (int h = hash(row) & mask; ; h = (h + 1) & mask) {
+            int s = slots[h];
+            if (s < 0 || sameKey(s, row)) return h;
+        }
+    }
+
+    private int hash(int row) {
+        int h = 1;
+        for (int c = 0, base = row * width; c < keyWidth; c++) h = 31 * h + data[base + c];
+        return h ^ (h >>> 16);
+    }
+
+    private boolean sameKey(int a, int b) {
+        for (int c = 0; c < keyWidth; c++) {
+            if (data[a * width + c] != data[b * width + c]) return false;
+        }
+        return true;
+    }
+
+    private static int[] emptySlots(int capacity) {
+        int[] s = new int[capacity];
+        Arrays.fill(s, -1);
+        return s;
+    }
+
+    private int grow() {
+        int base = size * width;
+        if (base + width > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, base + width));
+        return base;
+    }
+}
@@ -0,0 +1,134 @@
+package com.supergraph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The class files of one JDK's module image (jrt:/), for ClassFileTypeSolver: with --jdk-home the answers
+// come from that JDK rather than from whichever one runs the parser.
+//
+// /packages/<pkg>/ lists the modules that hold a package; classes live under /modules/<module>/<pkg path>/.
+// The package -> modules index is read in full when the image is opened and never changes afterwards, so it
+// is shared by all workers and does not grow with the packages of the repositories parsed.
+final class JdkImage implements ClassFileTypeSolver.ClassFiles {
+    private static JdkImage current;
+    // Images of other JDKs by real java.home, opened once for the life of the JVM: a jrt file system holds a
+    // class loader and the open modules file, which the server must not pile up per request.
+    private static final Map<Path, JdkImage> OTHERS = new ConcurrentHashMap<>();
+
+    private final FileSystem fs;
+    private final String id;
+    private final Map<String, List<String>> modulesByPackage;
+
+    private JdkImage(FileSystem fs, Path javaHome) throws IOException {
+        this.fs = fs;
+        this.id = id(javaHome);
+        this.modulesByPackage = packages(fs);
+    }
+
+    // the image of the JDK running the parser
+    static synchronized JdkImage current() {
+        if (current == null) {
+            try {
+                current = new JdkImage(FileSystems.getFileSystem(URI.create("jrt:/")), Paths.get(System.getProperty("java.home")));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return current;
+    }
+
+    // the image of another JDK (9 or later) installed at javaHome
+    static JdkImage of(Path javaHome) {
+        if (!Files.isRegularFile(javaHome.resolve("lib").resolve("modules"))) {
+            throw new SemanticParserCli.UsageException("Not a JDK home (no lib/modules): " + javaHome);
+        }
+        try {
+            return OTHERS.computeIfAbsent(javaHome.toRealPath(), home -> {
+                try {
+                    FileSystem fs = FileSystems.newFileSystem(URI.create("jrt:/"), Map.of("java.home", home.toString()));
+                    try {
+                        return new JdkImage(fs, home);
+                    } catch (IOException e) {
+                        fs.close();
+                        throw e;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException | ProviderNotFoundException e) {
+            throw new SemanticParserCli.UsageException("Cannot open the JDK image of " + javaHome + ": " + e.getMessage());
+        }
+    }
+
+    // Which JDK, and which build of it: java.home plus the size and modification time of its lib/modules.
+    String id() {
+        return id;
+    }
+
+    private static String id(Path javaHome) {
+        Path modules = javaHome.resolve("lib").resolve("modules");
+        try {
+            return javaHome + "\0" + Files.size(modules) + "\0" + Files.getLastModifiedTime(modules).toMillis();
+        } catch (IOException e) {
+            return javaHome.toString();
+        }
+    }
+
+    @Override
+    public boolean has(String binaryName) {
+        return classFile(binaryName) != null;
+    }
+
+    @Override
+    public InputStream open(String binaryName) throws IOException {
+        Path p = classFile(binaryName);
+        return p == null ? null : Files.newInputStream(p);
+    }
+
+    @Override
+    public URL url(String binaryName) {
+        Path p = classFile(binaryName);
+        try {
+            return p == null ? null : p.toUri().toURL();
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Class file of a binary name such as java.util.Map$Entry; null when no module has it.
+    private Path classFile(String binaryName) {
+        int dot = binaryName.lastIndexOf('.');
+        if (dot < 0) return null;
+        String pkg = binaryName.substring(0, dot);
+        for (String module : modulesByPackage.getOrDefault(pkg, List.of())) {
+            Path p = fs.getPath("/modules", module, pkg.replace('.', '/'), binaryName.substring(dot + 1) + ".class");
+            if (Files.isRegularFile(p)) return p;
+        }
+        return null;
+    }
+
+    private static Map<String, List<String>> packages(FileSystem fs) throws IOException {
+        Map<String, List<String>> out = new HashMap<>();
+        try (DirectoryStream<Path> pkgs = Files.newDirectoryStream(fs.getPath("/packages"))) {
+            for (Path pkg : pkgs) {
+                List<String> modules = new ArrayList<>(1);
+                try (DirectoryStream<Path> ms = Files.newDirectoryStream(pkg)) {
+                    for (Path m : ms) modules.add(m.getFileName().toString());
+                }
+                out.put(pkg.getFileName().toString(), List.copyOf(modules));
+            }
+        }
+        return Map.copyOf(out);
+    }
+}
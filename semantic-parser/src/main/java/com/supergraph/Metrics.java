@@ -0,0 +1,200 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// --metrics [file]: time, CPU, allocated bytes and item counts per phase, plus resolution outcomes by
+// reason, written as JSON to the file or (without one) as a single line on stderr.
+//
+// Coordinator phases (discover, scan, index, extract, write) run on the calling thread and their
+// time is wall time. scan and extract hand their work to the pool, so their CPU and allocation only cover
+// the coordinating thread; the work itself shows up in the worker phases (hash, parse, extract_unit,
+// resolve_call), which are summed over all workers: their time is busy time, and resolve_call is part of
+// extract_unit. With metrics off, start() returns null and every other call returns at once.
+//
+// heap_peak_bytes adds up each heap pool's peak since the run started (JVM-wide, so concurrent server jobs
+// share it); pools peak at different times, so it is an upper bound. Compare it and wall_ms with and without
+// --low-memory to pick the mode for a repository.
+final class Metrics {
+
+    enum Phase {
+        DISCOVER(false), SCAN(false), HASH(true), PARSE(true), INDEX(false), EXTRACT(false),
+        EXTRACT_UNIT(true), RESOLVE_CALL(true), WRITE(false);
+
+        final boolean workers;
+        Phase(boolean workers) { this.workers = workers; }
+    }
+
+    static final class Span {
+        final long nanos;
+        final long cpu;
+        final long alloc;
+        Span(long nanos, long cpu, long alloc) { this.nanos = nanos; this.cpu = cpu; this.alloc = alloc; }
+    }
+
+    private static final class Totals {
+        final LongAdder nanos = new LongAdder();
+        final LongAdder cpu = new LongAdder();
+        final LongAdder alloc = new LongAdder();
+        final LongAdder spans = new LongAdder();
+        final LongAdder items = new LongAdder();
+    }
+
+    static final Metrics OFF = new Metrics(false);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOC =
+            THREADS instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) THREADS : null;
+
+    final boolean enabled;
+    private final Totals[] phases = new Totals[Phase.values().length];
+    private final Map<String, Map<String, LongAdder>> outcomes = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private final long startProcessCpu = processCpu();
+    private final long[] startGc = gc();
+
+    Metrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < phases.length; i++) phases[i] = new Totals();
+        if (enabled) resetHeapPeak();
+    }
+
+    Span start() {
+        if (!enabled) return null;
+        return new Span(System.nanoTime(), THREADS.getCurrentThreadCpuTime(), allocated());
+    }
+
+    void stop(Phase phase, Span s, long items) {
+        if (s == null) return;
+        Totals t = phases[phase.ordinal()];
+        t.nanos.add(System.nanoTime() - s.nanos);
+        t.cpu.add(THREADS.getCurrentThreadCpuTime() - s.cpu);
+        t.alloc.add(allocated() - s.alloc);
+        t.spans.increment();
+        t.items.add(items);
+    }
+
+    // e.g. outcome("calls", "unresolved:UnsolvedSymbolException")
+    void outcome(String kind, String result) {
+        if (!enabled) return;
+        outcomes.computeIfAbsent(kind, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(result, k -> new LongAdder()).increment();
+    }
+
+    static String reason(Throwable t) {
+        return t.getClass().getSimpleName();
+    }
+
+    void write(JsonGenerator gen, SemanticParserCli.Options o, FileScanner scanner, ParseCache cache,
+               CallResolutionCache callCache) throws IOException {
+        long[] gcNow = gc();
+        gen.writeStartObject();
+        gen.writeStringField("project_name", o.projectName);
+        gen.writeStringField("repo_id", o.repoId);
+        gen.writeNumberField("threads", o.threads);
+        gen.writeNumberField("files", scanner.files.sum());
+        gen.writeNumberField("wall_ms", millis(System.nanoTime() - startNanos));
+        gen.writeNumberField("process_cpu_ms", millis(processCpu() - startProcessCpu));
+        gen.writeNumberField("gc_count", gcNow[0] - startGc[0]);
+        gen.writeNumberField("gc_ms", gcNow[1] - startGc[1]);
+        gen.writeBooleanField("low_memory", o.lowMemory);
+        gen.writeNumberField("heap_peak_bytes", heapPeak());
+
+        gen.writeObjectFieldStart("phases");
+        for (Phase p : Phase.values()) {
+            Totals t = phases[p.ordinal()];
+            if (t.spans.sum() == 0) continue;
+            gen.writeObjectFieldStart(p.name().toLowerCase());
+            gen.writeStringField("on", p.workers ? "workers" : "coordinator");
+            gen.writeNumberField("time_ms", millis(t.nanos.sum()));
+            gen.writeNumberField("cpu_ms", millis(t.cpu.sum()));
+            if (ALLOC != null) gen.writeNumberField("alloc_bytes", t.alloc.sum());
+            gen.writeNumberField("spans", t.spans.sum());
+            gen.writeNumberField("items", t.items.sum());
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("resolution");
+        for (Map.Entry<String, Map<String, LongAdder>> k : new TreeMap<>(outcomes).entrySet()) {
+            gen.writeObjectFieldStart(k.getKey());
+            for (Map.Entry<String, LongAdder> r : new TreeMap<>(k.getValue()).entrySet()) {
+                gen.writeNumberField(r.getKey(), r.getValue().sum());
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("discovery");
+        gen.writeNumberField("directories", scanner.dirs.sum());
+        gen.writeNumberField("skipped_files", scanner.skippedFiles.sum());
+        gen.writeNumberField("skipped_directories", scanner.skippedDirs.sum());
+        gen.writeEndObject();
+
+        if (callCache != null) {
+            gen.writeObjectFieldStart("call_cache");
+            gen.writeNumberField("hits", callCache.hits.sum());
+            gen.writeNumberField("misses", callCache.misses.sum());
+            gen.writeNumberField("evictions", callCache.evictions.sum());
+            gen.writeNumberField("uncacheable", callCache.uncacheable.sum());
+            gen.writeEndObject();
+        }
+        if (cache != null) {
+            gen.writeObjectFieldStart("parse_cache");
+            gen.writeNumberField("hits", cache.hits.get());
+            gen.writeNumberField("misses", cache.misses.get());
+            gen.writeNumberField("stale", cache.stale.get());
+            gen.writeNumberField("write_errors", cache.writeErrors.get());
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+    }
+
+    private static long allocated() {
+        return ALLOC != null ? ALLOC.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static long processCpu() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0;
+    }
+
+    static void resetHeapPeak() {
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() == MemoryType.HEAP) p.resetPeakUsage();
+        }
+    }
+
+    static long heapPeak() {
+        long sum = 0;
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() == MemoryType.HEAP && p.getPeakUsage() != null) sum += p.getPeakUsage().getUsed();
+        }
+        return sum;
+    }
+
+    // {collections, collection time in ms} over all collectors
+    private static long[] gc() {
+        long count = 0, time = 0;
+        for (GarbageCollectorMXBean b : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, b.getCollectionCount());
+            time += Math.max(0, b.getCollectionTime());
+        }
+        return new long[] {count, time};
+    }
+}
@@ -0,0 +1,103 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.*;
+
+// --format ndjson: one typed record per line ({"kind":"method",...}), written while extraction runs.
+//
+// Records come out in an order a consumer can write as it reads them:
+//   project, all types, then per unit (file order) its methods, fields, extends, implements,
+//   dependencies and, if a time budget cut it short, a "degraded" record; then all calls, then a final
+//   "end" record with per-kind counts.
+// Calls are held back until every method has been written because a call may point at a method of a
+// later file. Edges are deduplicated on the way out with the same keys as the JSON document.
+final class NdjsonGraphWriter implements SemanticParserCli.GraphSink {
+
+    private final JsonGenerator gen;
+    private final String projectName;
+    private final String repoId;
+
+    // Every edge written so far, as id rows that drop repeats on insertion; the calls wait here until finish.
+    private final SemanticParserCli.Graph held = new SemanticParserCli.Graph();
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+    NdjsonGraphWriter(JsonGenerator gen, String projectName, String repoId) throws IOException {
+        this.gen = gen;
+        this.projectName = projectName;
+        this.repoId = repoId;
+        held.project_name = projectName;
+        held.repo_id = repoId;
+        gen.setRootValueSeparator(null); // lines are separated by the explicit newlines below
+
+        gen.writeStartObject();
+        gen.writeStringField("kind", "project");
+        gen.writeStringField("project_name", projectName);
+        gen.writeStringField("repo_id", repoId);
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    @Override
+    public void types(List<Map<String, Object>> rows) throws IOException {
+        for (Map<String, Object> row : rows) record("type", row);
+        gen.flush();
+    }
+
+    @Override
+    public void unit(SemanticParserCli.Graph f) throws IOException {
+        for (Map<String, Object> row : f.methods) record("method", row);
+        for (Map<String, Object> row : f.fields) record("field", row);
+        int[] map = held.symbols.importAll(f.symbols);
+        edges(f, "extends", "extends", map);
+        edges(f, "implements", "implements", map);
+        edges(f, "dependencies", "dependency", map);
+        for (int i = 0; i < f.calls.size(); i++) held.copyEdge("calls", f, i, map);
+        for (Map<String, Object> row : f.degraded) record("degraded", row);
+        gen.flush();
+    }
+
+    void finish() throws IOException {
+        for (int i = 0; i < held.calls.size(); i++) edgeRecord("call", held, "calls", i);
+
+        gen.writeStartObject();
+        gen.writeStringField("kind", "end");
+        gen.writeStringField("project_name", projectName);
+        gen.writeStringField("repo_id", repoId);
+        gen.writeObjectFieldStart("counts");
+        for (Map.Entry<String, Integer> e : counts.entrySet()) gen.writeNumberField(e.getKey(), e.getValue());
+        gen.writeEndObject();
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        gen.flush();
+    }
+
+    private void record(String kind, Map<String, Object> row) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("kind", kind);
+        for (Map.Entry<String, Object> e : row.entrySet()) {
+            gen.writeFieldName(e.getKey());
+            GraphJsonWriter.writeValue(gen, e.getValue());
+        }
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        counts.merge(kind, 1, Integer::sum);
+    }
+
+    private void edges(SemanticParserCli.Graph f, String section, String kind, int[] map) throws IOException {
+        for (int i = 0, n = f.edges(section).size(); i < n; i++) {
+            int row = held.copyEdge(section, f, i, map);
+            if (row >= 0) edgeRecord(kind, held, section, row);
+        }
+    }
+
+    private void edgeRecord(String kind, SemanticParserCli.Graph g, String section, int i) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("kind", kind);
+        GraphJsonWriter.writeEdgeFields(gen, g, section, i);
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        counts.merge(kind, 1, Integer::sum);
+    }
+}
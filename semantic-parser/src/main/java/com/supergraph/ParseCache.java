@@ -0,0 +1,168 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// --cache-dir: per-file extraction results keyed by content hash, so unchanged files are neither parsed
+// nor resolved again on the next run.
+//
+// An entry holds the file's type declarations (enough for the first pass), its second-pass fragment, the
+// file hash of every internal type the fragment resolved against and the simple names it refers to that no
+// internal type had. The fragment is reused only while all of those dependency hashes still match and none of
+// those names has become an internal type; otherwise the file is parsed and extracted again.
+//
+// Entries live under v<VERSION>/<resolution key>/: what the symbol solver can see besides the project's own
+// sources (JDK image, classpath jars, shared units) decides which calls resolve, so a run with other settings
+// or a changed jar does not see them.
+final class ParseCache {
+
+    // Bump whenever extraction output changes shape or meaning; old entries are then ignored.
+    static final String VERSION = "3";
+
+    static final class TypeDecl {
+        final String fqn;
+        final String name;
+        final String pkg;
+        TypeDecl(String fqn, String name, String pkg) { this.fqn = fqn; this.name = name; this.pkg = pkg; }
+    }
+
+    static final class Entry {
+        final List<TypeDecl> types;
+        final Map<String, String> deps; // internal dependency fqn -> hash of its file at extraction time
+        final Set<String> unresolved;   // simple names referred to that no internal type had
+        final SemanticParserCli.Graph fragment;
+        Entry(List<TypeDecl> types, Map<String, String> deps, Set<String> unresolved, SemanticParserCli.Graph fragment) {
+            this.types = types; this.deps = deps; this.unresolved = unresolved; this.fragment = fragment;
+        }
+    }
+
+    private static final String[] ROW_SECTIONS = {"methods", "fields"};
+
+    private final Path dir;
+    private final ObjectMapper om = new ObjectMapper();
+
+    final AtomicInteger hits = new AtomicInteger();
+    final AtomicInteger misses = new AtomicInteger();
+    final AtomicInteger stale = new AtomicInteger();
+    final AtomicInteger writeErrors = new AtomicInteger();
+
+    ParseCache(Path dir, String resolutionKey) throws IOException {
+        this.dir = dir.resolve("v" + VERSION).resolve(resolutionKey);
+        Files.createDirectories(this.dir);
+    }
+
+    // Settings and files that change how references resolve; jdk null is --jdk-reflection, jars null no classpath.
+    static String resolutionKey(JdkImage jdk, List<Path> jars, boolean sharedUnits) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("jdk ").append(jdk == null ? "reflection" : jdk.id()).append('\n');
+        sb.append("shared-units ").append(sharedUnits).append('\n');
+        if (jars != null) {
+            for (Path jar : jars) {
+                String key;
+                try {
+                    key = ClasspathIndex.key(jar);
+                } catch (IOException e) {
+                    key = jar.toAbsolutePath() + " unreadable";
+                }
+                sb.append("jar ").append(key).append('\n');
+            }
+        }
+        return ContentHash.SHA1.of(sb.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    // null when there is no usable entry for this content
+    Entry load(String contentHash) {
+        Path p = pathFor(contentHash);
+        if (!Files.isRegularFile(p)) return null;
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> m = om.readValue(p.toFile(), Map.class);
+            List<TypeDecl> types = new ArrayList<>();
+            for (Object o : (List<?>) m.get("types")) {
+                Map<?, ?> t = (Map<?, ?>) o;
+                types.add(new TypeDecl((String) t.get("fqn"), (String) t.get("name"), (String) t.get("pkg")));
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, String> deps = (Map<String, String>) m.get("deps");
+            @SuppressWarnings("unchecked")
+            Set<String> unresolved = new TreeSet<>((List<String>) m.get("unresolved"));
+            SemanticParserCli.Graph g = new SemanticParserCli.Graph();
+            for (String s : ROW_SECTIONS) section(g, s).addAll(rows(m.get(s)));
+            for (String s : SemanticParserCli.Graph.EDGE_SECTIONS) {
+                for (Map<String, Object> row : rows(m.get(s))) g.addEdgeRow(s, row);
+            }
+            return new Entry(types, deps, unresolved, g);
+        } catch (Exception e) {
+            return null; // unreadable or from an incompatible writer; treated as a miss
+        }
+    }
+
+    void store(String contentHash, Entry e) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        List<Map<String, String>> types = new ArrayList<>();
+        for (TypeDecl t : e.types) {
+            Map<String, String> row = new LinkedHashMap<>();
+            row.put("fqn", t.fqn);
+            row.put("name", t.name);
+            row.put("pkg", t.pkg);
+            types.add(row);
+        }
+        m.put("types", types);
+        m.put("deps", e.deps);
+        m.put("unresolved", e.unresolved);
+        for (String s : ROW_SECTIONS) m.put(s, section(e.fragment, s));
+        for (String s : SemanticParserCli.Graph.EDGE_SECTIONS) m.put(s, e.fragment.edgeRows(s));
+        Path p = pathFor(contentHash);
+        try {
+            Files.createDirectories(p.getParent());
+            // write-then-rename so concurrent writers of identical content never expose a partial file
+            Path tmp = Files.createTempFile(p.getParent(), contentHash, ".tmp");
+            om.writeValue(tmp.toFile(), m);
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            writeErrors.incrementAndGet();
+        }
+    }
+
+    // Cached rows carry the project, repo and path of the run that wrote them; rewrite them in place
+    // (keeps key order) for this run. Edges take project and repo from the graph when written.
+    static void rebind(SemanticParserCli.Graph g, String projectName, String repoId, String rel) {
+        g.project_name = projectName;
+        g.repo_id = repoId;
+        g.setFile(rel);
+        for (String s : ROW_SECTIONS) {
+            for (Map<String, Object> row : section(g, s)) {
+                row.put("project_name", projectName);
+                row.put("repo_id", repoId);
+                if (row.containsKey("file")) row.put("file", rel);
+            }
+        }
+    }
+
+    String stats() {
+        return "cache: " + hits.get() + " hits, " + misses.get() + " misses, " + stale.get() + " stale"
+                + (writeErrors.get() > 0 ? ", " + writeErrors.get() + " write errors" : "");
+    }
+
+    private Path pathFor(String contentHash) {
+        return dir.resolve(contentHash.substring(0, 2)).resolve(contentHash + ".json");
+    }
+
+    private static List<Map<String, Object>> section(SemanticParserCli.Graph g, String name) {
+        switch (name) {
+            case "methods": return g.methods;
+            case "fields": return g.fields;
+            default: throw new IllegalArgumentException(name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> rows(Object o) {
+        return o == null ? List.of() : (List<Map<String, Object>>) o;
+    }
+}
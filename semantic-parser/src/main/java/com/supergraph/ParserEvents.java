@@ -0,0 +1,91 @@
+package com.supergraph;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Java Flight Recorder events for the parser's hot paths, so a recording shows which files, types and calls
+// the time went to rather than only JavaParser frames. Duration is the event's own; stack traces are off,
+// since the interesting frames are the same for every event. When no recording is running, begin() and
+// shouldCommit() are no-ops and the fields are never filled in.
+//
+//   java -XX:StartFlightRecording=filename=parse.jfr -jar semantic-parser.jar --root ...
+//   jfr print --events com.supergraph.CallResolution parse.jfr
+final class ParserEvents {
+
+    private ParserEvents() {}
+
+    @Name("com.supergraph.FileParse")
+    @Label("File Parse")
+    @Category({"Semantic Parser"})
+    @Description("Parsing one source file into a compilation unit")
+    @StackTrace(false)
+    static final class FileParse extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Outcome")
+        @Description("parsed, failed:syntax or failed:<exception>")
+        String outcome;
+    }
+
+    @Name("com.supergraph.TypeExtraction")
+    @Label("Type Extraction")
+    @Category({"Semantic Parser"})
+    @Description("Fields, methods, calls and supertypes of one type declaration")
+    @StackTrace(false)
+    static final class TypeExtraction extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Owner FQN")
+        String ownerFqn;
+
+        @Label("Methods")
+        int methods;
+
+        @Label("Fields")
+        int fields;
+
+        @Label("Internal Calls")
+        int calls;
+    }
+
+    @Name("com.supergraph.CallResolution")
+    @Label("Call Resolution")
+    @Category({"Semantic Parser"})
+    @Description("Argument types and target of one method call expression")
+    @StackTrace(false)
+    static final class CallResolution extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Owner FQN")
+        @Description("Type declaring the calling method")
+        String ownerFqn;
+
+        @Label("Caller")
+        String caller;
+
+        @Label("Method")
+        @Description("Name of the called method")
+        String method;
+
+        @Label("Line")
+        int line;
+
+        @Label("Target")
+        @Description("owner#signature, when resolved")
+        String target;
+
+        @Label("Outcome")
+        @Description("internal, external or unresolved:<exception>")
+        String outcome;
+
+        @Label("Cached")
+        boolean cached;
+    }
+}
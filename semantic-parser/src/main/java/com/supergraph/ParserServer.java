@@ -0,0 +1,212 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// --serve: keeps one JVM (loaded JavaParser/JDK classes, JIT profile) alive across parse jobs.
+//
+//   POST /parse   body: {"root": "...", "projectName": "...", "repoId": "...", "format": "ndjson", ...}
+//                 Same keys as the command-line flags (without "--"); the response body is exactly what
+//                 the command line would print, streamed as it is produced.
+//   GET  /health  {"status":"ok","running":n,"queued":m}
+//
+// At most --max-jobs parses run at once and at most --max-queue more wait for a slot; anything beyond
+// that is answered 503 straight away. Binds to 127.0.0.1 unless --host says otherwise.
+//
+// A request cannot make the server write files anywhere it likes: "out" is rejected, and "snapshot-out",
+// "cache-dir" and a "metrics" file are only accepted under the directory given with --write-dir (relative
+// paths are taken from there, symbolic links are followed for the check), and rejected when the server has none.
+final class ParserServer {
+
+    private static final Set<String> REJECTED_KEYS = Set.of("out", "serve", "port", "host", "write-dir");
+    private static final Set<String> WRITE_KEYS = Set.of("snapshot-out", "cache-dir", "metrics");
+
+    private final int maxJobs;
+    private final int maxQueue;
+    private final int defaultThreads;
+    private final Path writeDir; // null: requests may not write files
+    private final Semaphore slots;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final ObjectMapper om = new ObjectMapper();
+
+    private ParserServer(int maxJobs, int maxQueue, int defaultThreads, Path writeDir) {
+        this.maxJobs = maxJobs;
+        this.maxQueue = maxQueue;
+        this.defaultThreads = defaultThreads;
+        this.writeDir = writeDir;
+        this.slots = new Semaphore(maxJobs, true);
+    }
+
+    static void start(Map<String, String> a) throws IOException {
+        String host = a.getOrDefault("host", "127.0.0.1");
+        int port = SemanticParserCli.intArg(a, "port", 8765);
+        int maxJobs = SemanticParserCli.intArg(a, "max-jobs", 2);
+        int maxQueue = SemanticParserCli.intArg(a, "max-queue", 8);
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = SemanticParserCli.intArg(a, "threads", Math.max(1, cores / maxJobs));
+
+        Path writeDir = null;
+        if (a.containsKey("write-dir")) {
+            Path d = Paths.get(a.get("write-dir"));
+            if (!Files.isDirectory(d)) throw new SemanticParserCli.UsageException("Not a directory: " + d);
+            writeDir = d.toRealPath();
+        }
+
+        ParserServer s = new ParserServer(maxJobs, maxQueue, threads, writeDir);
+        HttpServer http = HttpServer.create(new InetSocketAddress(host, port), 0);
+        http.createContext("/parse", s::handleParse);
+        http.createContext("/health", s::handleHealth);
+        // Before a request is admitted its handler thread only reads the body and checks the flags (baselines,
+        // jars and JDK images are loaded once it holds a slot), then waits or answers 503, so an unbounded pool
+        // is fine here; parse work itself is bounded by the semaphore.
+        http.setExecutor(Executors.newCachedThreadPool());
+        http.start();
+        System.err.println("semantic parser listening on http://" + host + ":" + port
+                + " (max-jobs " + maxJobs + ", max-queue " + maxQueue + ", threads/job " + threads
+                + (writeDir != null ? ", write-dir " + writeDir : "") + ")");
+    }
+
+    private void handleHealth(HttpExchange ex) throws IOException {
+        try (ex) {
+            int r = running.get();
+            String body = "{\"status\":\"ok\",\"running\":" + r + ",\"queued\":" + Math.max(0, admitted.get() - r) + "}";
+            respond(ex, 200, body);
+        }
+    }
+
+    private void handleParse(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!"POST".equals(ex.getRequestMethod())) {
+                respond(ex, 405, error("use POST"));
+                return;
+            }
+            SemanticParserCli.Options o;
+            try {
+                o = SemanticParserCli.Options.from(readArgs(ex));
+            } catch (IllegalArgumentException e) {
+                respond(ex, 400, error(e.getMessage()));
+                return;
+            }
+
+            if (admitted.incrementAndGet() > maxJobs + maxQueue) {
+                admitted.decrementAndGet();
+                respond(ex, 503, error("busy: " + maxJobs + " running, " + maxQueue + " queued"));
+                return;
+            }
+            try {
+                slots.acquire();
+                running.incrementAndGet();
+                try {
+                    try {
+                        o.load();
+                    } catch (IllegalArgumentException e) {
+                        respond(ex, 400, error(e.getMessage()));
+                        return;
+                    }
+                    ex.getResponseHeaders().set("Content-Type", contentType(o.format));
+                    ex.sendResponseHeaders(200, 0); // chunked; output is streamed as it is produced
+                    try (OutputStream os = new BufferedOutputStream(ex.getResponseBody())) {
+                        SemanticParserCli.run(o, os);
+                    }
+                } finally {
+                    running.decrementAndGet();
+                    slots.release();
+                }
+            } catch (InterruptedException e) {
+                // still waiting for a slot, so nothing has been sent yet
+                Thread.currentThread().interrupt();
+                respond(ex, 503, error("interrupted while waiting for a slot"));
+            } catch (Exception e) {
+                // Headers are already out; the client sees a truncated body (and no "end" record for ndjson).
+                System.err.println("parse failed for " + o.root + ": " + e);
+            } finally {
+                admitted.decrementAndGet();
+            }
+        }
+    }
+
+    private Map<String, String> readArgs(HttpExchange ex) throws IOException {
+        JsonNode body;
+        try {
+            body = om.readTree(ex.getRequestBody());
+        } catch (IOException e) {
+            throw new SemanticParserCli.UsageException("Request body is not valid JSON");
+        }
+        if (body == null || !body.isObject()) throw new SemanticParserCli.UsageException("Request body must be a JSON object");
+        Map<String, String> a = new HashMap<>();
+        a.put("threads", String.valueOf(defaultThreads));
+        for (Iterator<Map.Entry<String, JsonNode>> it = body.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> e = it.next();
+            if (REJECTED_KEYS.contains(e.getKey())) {
+                throw new SemanticParserCli.UsageException("Not allowed in a request: " + e.getKey());
+            }
+            if (!e.getValue().isNull()) a.put(e.getKey(), e.getValue().asText());
+        }
+        for (String k : WRITE_KEYS) {
+            String v = a.get(k);
+            // --metrics without a file writes to stderr
+            if (v == null || k.equals("metrics") && (v.equals("true") || v.equals("stderr"))) continue;
+            a.put(k, confined(k, v).toString());
+        }
+        return a;
+    }
+
+    private Path confined(String key, String value) {
+        if (writeDir == null) {
+            throw new SemanticParserCli.UsageException("Not allowed in a request unless the server runs with --write-dir: " + key);
+        }
+        Path p = writeDir.resolve(value).normalize();
+        // Checked on the real path of the deepest part that exists, so that a symbolic link inside the directory
+        // cannot lead out of it; the target itself may not be a link at all.
+        Path existing = p;
+        while (!Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) existing = existing.getParent();
+        Path real;
+        try {
+            real = existing.toRealPath().resolve(existing.relativize(p));
+        } catch (IOException e) {
+            throw new SemanticParserCli.UsageException(key + " cannot be checked: " + e.getMessage());
+        }
+        if (!real.startsWith(writeDir) || Files.isSymbolicLink(p)) {
+            throw new SemanticParserCli.UsageException(key + " must be under the server's --write-dir " + writeDir
+                    + " and not a symbolic link");
+        }
+        return real;
+    }
+
+    private String error(String message) throws IOException {
+        return om.writeValueAsString(Map.of("error", message));
+    }
+
+    private static String contentType(String format) {
+        switch (format) {
+            case "ndjson": return "application/x-ndjson";
+            case "cbor": return "application/cbor";
+            case "smile": return "application/x-jackson-smile";
+            default: return "application/json";
+        }
+    }
+
+    private static void respond(HttpExchange ex, int status, String body) throws IOException {
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, b.length);
+        ex.getResponseBody().write(b);
+    }
+}
@@ -1,117 +1,782 @@
 package com.supergraph;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.github.javaparser.StaticJavaParser;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
 import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.resolution.SymbolResolver;
+import com.github.javaparser.resolution.TypeSolver;
 import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
 import com.github.javaparser.resolution.types.ResolvedType;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.*;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.security.MessageDigest;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 public class SemanticParserCli {
 
-    public static class Graph {
+    // Receives the type rows once the first pass is done, then one fragment per unit in file order.
+    interface GraphSink {
+        void types(List<Map<String, Object>> rows) throws IOException;
+        void unit(Graph fragment) throws IOException;
+    }
+
+    static final List<String> DEPENDENCY_KEYS = List.of("from_fqn","to_fqn","via","file");
+    static final List<String> CALL_KEYS = List.of("from_owner_fqn","from_signature","to_owner_fqn","to_signature","file");
+
+    public static class Graph implements GraphSink {
         public String project_name;
         public String repo_id;
         public List<Map<String, Object>> types = new ArrayList<>();
         public List<Map<String, Object>> methods = new ArrayList<>();
         public List<Map<String, Object>> fields = new ArrayList<>();
-        public List<Map<String, Object>> dependencies = new ArrayList<>();
-        public List<Map<String, Object>> extends_rel = new ArrayList<>();
-        public List<Map<String, Object>> implements_rel = new ArrayList<>();
-        public List<Map<String, Object>> calls = new ArrayList<>();
+        public List<Map<String, Object>> degraded = new ArrayList<>(); // files cut short by a time budget
+
+        static final List<String> EDGE_SECTIONS = List.of("dependencies", "extends", "implements", "calls");
+
+        // Edges are rows of symbol ids rather than maps of strings; a large repo has millions of them. Columns:
+        //   dependencies    from_fqn, to_fqn, via, file
+        //   extends_rel     child_fqn, parent_fqn
+        //   implements_rel  child_fqn, iface_fqn
+        //   calls           from_owner_fqn, from_signature, to_owner_fqn, to_signature, file, first arg, arg count
+        //   callArgs        arg_expr, arg_type (one row per argument; calls point into it)
+        // Repeated edges are dropped as they are added, keeping the first: all columns identify a dependency or
+        // a supertype edge, the first five a call (a call site's argument lists do not).
+        // The writers resolve names while writing; edgeRows builds the output-shaped maps where needed.
+        final SymbolTable symbols = new SymbolTable();
+        final IntRows dependencies = new IntRows(4, 4);
+        final IntRows extends_rel = new IntRows(2, 2);
+        final IntRows implements_rel = new IntRows(2, 2);
+        final IntRows calls = new IntRows(7, 5);
+        final IntRows callArgs = new IntRows(2);
+
+        void addDependency(String from, String to, String via, String file) {
+            dependencies.add(symbols.intern(from), symbols.intern(to), symbols.intern(via), symbols.intern(file));
+        }
+
+        void addExtends(String child, String parent) {
+            extends_rel.add(symbols.intern(child), symbols.intern(parent));
+        }
+
+        void addImplements(String child, String iface) {
+            implements_rel.add(symbols.intern(child), symbols.intern(iface));
+        }
+
+        void addCall(String fromOwner, String fromSignature, String toOwner, String toSignature, String file,
+                     List<String> argExprs, List<String> argTypes) {
+            int row = calls.add(symbols.intern(fromOwner), symbols.intern(fromSignature),
+                    symbols.intern(toOwner), symbols.intern(toSignature), symbols.intern(file));
+            if (row < 0) return;
+            calls.set(row, 5, callArgs.size());
+            calls.set(row, 6, argExprs.size());
+            for (int i = 0; i < argExprs.size(); i++) {
+                callArgs.add(symbols.intern(argExprs.get(i)), symbols.intern(argTypes.get(i)));
+            }
+        }
+
+        String name(int id) {
+            return symbols.name(id);
+        }
+
+        int edgeCount() {
+            return dependencies.size() + extends_rel.size() + implements_rel.size() + calls.size();
+        }
+
+        IntRows edges(String section) {
+            switch (section) {
+                case "dependencies": return dependencies;
+                case "extends": return extends_rel;
+                case "implements": return implements_rel;
+                case "calls": return calls;
+                default: throw new IllegalArgumentException(section);
+            }
+        }
+
+        void addAll(Graph other) {
+            types.addAll(other.types);
+            methods.addAll(other.methods);
+            fields.addAll(other.fields);
+            degraded.addAll(other.degraded);
+            int[] map = symbols.importAll(other.symbols);
+            for (String section : EDGE_SECTIONS) {
+                for (int i = 0, n = other.edges(section).size(); i < n; i++) copyEdge(section, other, i, map);
+            }
+        }
+
+        // Appends edge i of from's section, whose ids map to this graph's through map; returns the new row,
+        // or -1 when this graph already has the edge.
+        int copyEdge(String section, Graph from, int i, int[] map) {
+            IntRows r = from.edges(section);
+            switch (section) {
+                case "dependencies":
+                    return dependencies.add(map[r.get(i, 0)], map[r.get(i, 1)], map[r.get(i, 2)], map[r.get(i, 3)]);
+                case "extends":
+                    return extends_rel.add(map[r.get(i, 0)], map[r.get(i, 1)]);
+                case "implements":
+                    return implements_rel.add(map[r.get(i, 0)], map[r.get(i, 1)]);
+                default:
+                    int row = calls.add(map[r.get(i, 0)], map[r.get(i, 1)], map[r.get(i, 2)], map[r.get(i, 3)], map[r.get(i, 4)]);
+                    if (row < 0) return -1;
+                    int start = r.get(i, 5), n = r.get(i, 6);
+                    calls.set(row, 5, callArgs.size());
+                    calls.set(row, 6, n);
+                    for (int k = start; k < start + n; k++) {
+                        callArgs.add(map[from.callArgs.get(k, 0)], map[from.callArgs.get(k, 1)]);
+                    }
+                    return row;
+            }
+        }
+
+        // A fragment covers one file; points its edges at another path (see ParseCache.rebind).
+        void setFile(String rel) {
+            int id = symbols.intern(rel);
+            for (int i = 0; i < dependencies.size(); i++) dependencies.set(i, 3, id);
+            for (int i = 0; i < calls.size(); i++) calls.set(i, 4, id);
+            dependencies.reindex();
+            calls.reindex();
+        }
+
+        // Edge rows as maps, in the shape the JSON document has them (see GraphJsonWriter.writeEdgeFields).
+        List<Map<String, Object>> edgeRows(String section) {
+            IntRows rows = edges(section);
+            List<Map<String, Object>> out = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("project_name", project_name);
+                m.put("repo_id", repo_id);
+                switch (section) {
+                    case "dependencies":
+                        m.put("from_fqn", name(rows.get(i, 0)));
+                        m.put("to_fqn", name(rows.get(i, 1)));
+                        m.put("to_simple", simpleName(name(rows.get(i, 1))));
+                        m.put("via", name(rows.get(i, 2)));
+                        m.put("file", name(rows.get(i, 3)));
+                        break;
+                    case "extends":
+                    case "implements":
+                        m.put("child_fqn", name(rows.get(i, 0)));
+                        m.put(section.equals("extends") ? "parent_ref" : "iface_ref", name(rows.get(i, 1)));
+                        break;
+                    default:
+                        m.put("from_owner_fqn", name(rows.get(i, 0)));
+                        m.put("from_signature", name(rows.get(i, 1)));
+                        m.put("to_owner_fqn", name(rows.get(i, 2)));
+                        m.put("to_signature", name(rows.get(i, 3)));
+                        m.put("file", name(rows.get(i, 4)));
+                        List<String> exprs = new ArrayList<>(), types = new ArrayList<>();
+                        for (int k = rows.get(i, 5), end = k + rows.get(i, 6); k < end; k++) {
+                            exprs.add(name(callArgs.get(k, 0)));
+                            types.add(name(callArgs.get(k, 1)));
+                        }
+                        m.put("arg_exprs", exprs);
+                        m.put("arg_types", types);
+                }
+                out.add(m);
+            }
+            return out;
+        }
+
+        // Inverse of edgeRows for one row.
+        @SuppressWarnings("unchecked")
+        void addEdgeRow(String section, Map<String, Object> m) {
+            switch (section) {
+                case "dependencies":
+                    addDependency((String) m.get("from_fqn"), (String) m.get("to_fqn"), (String) m.get("via"), (String) m.get("file"));
+                    break;
+                case "extends":
+                    addExtends((String) m.get("child_fqn"), (String) m.get("parent_ref"));
+                    break;
+                case "implements":
+                    addImplements((String) m.get("child_fqn"), (String) m.get("iface_ref"));
+                    break;
+                case "calls":
+                    addCall((String) m.get("from_owner_fqn"), (String) m.get("from_signature"), (String) m.get("to_owner_fqn"),
+                            (String) m.get("to_signature"), (String) m.get("file"),
+                            (List<String>) m.get("arg_exprs"), (List<String>) m.get("arg_types"));
+                    break;
+                default:
+                    throw new IllegalArgumentException(section);
+            }
+        }
+
+        @Override
+        public void types(List<Map<String, Object>> rows) {
+            types.addAll(rows);
+        }
+
+        @Override
+        public void unit(Graph fragment) {
+            addAll(fragment);
+        }
     }
 
     public static void main(String[] args) throws Exception {
         Map<String, String> a = parseArgs(args);
-        String root = require(a, "root");
-        String projectName = a.getOrDefault("projectName", new File(root).getName());
-        String repoId = a.getOrDefault("repoId", "local");
-        String out = a.get("out"); // optional path; if absent -> stdout
+        try {
+            if (a.containsKey("serve")) {
+                ParserServer.start(a);
+                return;
+            }
+            Options o = Options.from(a);
+            String out = a.get("out"); // optional path; if absent -> stdout
+            if (out != null && !out.isBlank()) {
+                try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(Paths.get(out)))) {
+                    run(o, os);
+                }
+            } else {
+                run(o, System.out);
+                System.out.flush();
+            }
+        } catch (UsageException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
 
-        Path rootPath = Paths.get(root).toAbsolutePath().normalize();
+    // Bad or missing arguments; exit code 2 on the command line, HTTP 400 in server mode.
+    static class UsageException extends IllegalArgumentException {
+        UsageException(String message) { super(message); }
+    }
 
-        // Find likely source roots (maven/gradle) but also allow parsing any java under root.
-        List<Path> sourceRoots = detectSourceRoots(rootPath);
-        if (sourceRoots.isEmpty()) sourceRoots = List.of(rootPath);
+    // Per-run settings, taken from command-line flags or from a server request.
+    static final class Options {
+        Path root;
+        String projectName;
+        String repoId;
+        int threads;
+        boolean pretty;   // indented output; compact by default
+        String cacheDir;  // optional; reuse per-file results across runs
+        String format;
+        Path baselinePath; // optional; previous full JSON output; switches to delta output
+        Path snapshotOut; // optional with --baseline; where to write the merged full document
+        int callCacheSize; // resolved calls memoized per worker; 0 with --no-call-cache
+        boolean metrics;  // --metrics; per-phase timings and resolution outcomes
+        Path metricsOut;  // optional with --metrics; JSON sidecar file instead of stderr
+        int fileBudgetMs;    // symbol-solver time per file; 0 = unlimited
+        int resolveBudgetMs; // symbol-solver time per call; 0 = unlimited
+        boolean lowMemory;   // --low-memory; keep only type declarations between the passes, re-parse in pass two
+        ContentHash hash;    // --hash; file_hash, body_hash and parse cache keys
+        int mmapThreshold;   // --mmap-threshold; map source files of at least this many bytes; 0 = never
+        boolean sharedUnits; // resolve internal types from the first pass's units; off with --no-shared-units
+        Path jdkHome;        // --jdk-home; null for the running JDK
+        boolean jdkReflection; // --jdk-reflection; load JDK classes, as before
+        String classpath;    // --classpath, as given
+        Path m2Repo;         // --m2-repo
+        boolean ignoreFiles; // honour .gitignore and skip build output; off with --no-ignore
+        List<PathMatcher> include; // --include; empty = every .java file
+        List<PathMatcher> exclude; // --exclude
+        FileScanner.Generated generated; // --generated; what generated code discovery leaves out
 
-        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
-        typeSolver.add(new ReflectionTypeSolver());
+        // Filled by load():
+        BaselineDelta.Baseline baseline; // the --baseline document
+        JdkImage jdk;             // --jdk-home, else the running JDK's image; null with --jdk-reflection
+        List<Path> classpathJars; // --classpath and --m2-repo, expanded to jars; null without either
+        private boolean loaded;
 
-        for (Path sr : sourceRoots) {
-            if (Files.isDirectory(sr)) {
-                typeSolver.add(new JavaParserTypeSolver(sr.toFile()));
+        // Reads the flags and checks them; only cheap checks (no file is read or listed), since the server
+        // does this for every request before deciding whether it can take it. See load().
+        static Options from(Map<String, String> a) {
+            Options o = new Options();
+            String root = require(a, "root");
+            o.root = Paths.get(root).toAbsolutePath().normalize();
+            if (!Files.isDirectory(o.root)) throw new UsageException("Not a directory: " + root);
+            o.projectName = a.getOrDefault("projectName", new File(root).getName());
+            o.repoId = a.getOrDefault("repoId", "local");
+            o.threads = intArg(a, "threads", Runtime.getRuntime().availableProcessors());
+            o.pretty = a.containsKey("pretty") && !"false".equals(a.get("pretty"));
+            o.cacheDir = a.get("cache-dir");
+            o.format = a.getOrDefault("format", "json");
+            if (!List.of("json", "ndjson", "cbor", "smile").contains(o.format)) {
+                throw new UsageException("Unsupported --format: " + o.format + " (expected json, ndjson, cbor or smile)");
+            }
+            o.callCacheSize = a.containsKey("no-call-cache") ? 0 : intArg(a, "call-cache-size", 10_000);
+            o.fileBudgetMs = intArg(a, "file-budget-ms", 0, 0);
+            o.resolveBudgetMs = intArg(a, "resolve-budget-ms", 0, 0);
+            o.lowMemory = a.containsKey("low-memory") && !"false".equals(a.get("low-memory"));
+            o.hash = ContentHash.named(a.getOrDefault("hash", "sha1"));
+            o.mmapThreshold = intArg(a, "mmap-threshold", 0, 0);
+            o.sharedUnits = !a.containsKey("no-shared-units");
+            o.jdkReflection = a.containsKey("jdk-reflection");
+            if (a.containsKey("jdk-home")) {
+                if (o.jdkReflection) throw new UsageException("--jdk-home and --jdk-reflection exclude each other");
+                o.jdkHome = Paths.get(require(a, "jdk-home")).toAbsolutePath();
+                if (!Files.isDirectory(o.jdkHome)) throw new UsageException("Not a directory: " + a.get("jdk-home"));
+            }
+            if (a.containsKey("classpath")) o.classpath = require(a, "classpath");
+            if (a.containsKey("m2-repo")) {
+                o.m2Repo = Paths.get(require(a, "m2-repo")).toAbsolutePath();
+                if (!Files.isDirectory(o.m2Repo)) throw new UsageException("Not a directory: " + a.get("m2-repo"));
+            }
+            o.ignoreFiles = !a.containsKey("no-ignore");
+            o.include = FileScanner.globs("include", a.get("include"));
+            o.exclude = FileScanner.globs("exclude", a.get("exclude"));
+            o.generated = FileScanner.Generated.named(a.getOrDefault("generated", "dirs"));
+            if (a.containsKey("metrics")) {
+                o.metrics = true;
+                String m = a.get("metrics");
+                if (!m.equals("true") && !m.equals("stderr")) o.metricsOut = Paths.get(m).toAbsolutePath();
+            }
+            if (a.containsKey("baseline")) {
+                o.baselinePath = Paths.get(require(a, "baseline")).toAbsolutePath();
+                if (!Files.isRegularFile(o.baselinePath)) throw new UsageException("Not a file: " + a.get("baseline"));
+                if (!o.format.equals("json")) throw new UsageException("--baseline only supports --format json");
+                if (o.lowMemory) throw new UsageException("--low-memory does not apply to --baseline");
             }
+            if (a.containsKey("snapshot-out")) {
+                if (o.baselinePath == null) throw new UsageException("--snapshot-out requires --baseline");
+                o.snapshotOut = Paths.get(require(a, "snapshot-out")).toAbsolutePath();
+            }
+            return o;
+        }
+
+        // The expensive part: loads the baseline, opens the JDK image and lists the classpath jars. Problems
+        // there are still usage errors, so this runs before any output is sent; the server calls it once the
+        // request holds a slot, run() otherwise. Does nothing the second time.
+        void load() {
+            if (loaded) return;
+            if (baselinePath != null) baseline = BaselineDelta.Baseline.load(baselinePath, projectName, repoId);
+            if (jdkHome != null) jdk = JdkImage.of(jdkHome);
+            else if (!jdkReflection) jdk = JdkImage.current();
+            if (classpath != null || m2Repo != null) classpathJars = classpathJars(classpath, m2Repo);
+            loaded = true;
+        }
+    }
+
+    static void run(Options o, OutputStream os) throws IOException {
+        o.load();
+        Path rootPath = o.root;
+        Metrics metrics = o.metrics ? new Metrics(true) : Metrics.OFF;
+        Metrics.Span span = metrics.start();
+        // with --low-memory no units are kept to share
+        UnitTypeSolver.Units units = o.sharedUnits && !o.lowMemory ? new UnitTypeSolver.Units() : null;
+        JdkImage jdk = o.jdk;
+        ForkJoinPool pool = new ForkJoinPool(o.threads);
+        ClasspathIndex classpath = classpathIndex(o, pool);
+        ParserConfiguration cfg = parserConfiguration(rootPath, o.lowMemory ? LOW_MEMORY_SOLVER_CACHE : -1, units, jdk,
+                classpath);
+
+        FileScanner scanner = new FileScanner(o.ignoreFiles, o.include, o.exclude, o.generated);
+        List<Path> javaFiles = scanner.scan(rootPath, pool);
+        metrics.stop(Metrics.Phase.DISCOVER, span, javaFiles.size());
+
+        JsonFactory factory = outputFactory(o.format).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        boolean text = !factory.canHandleBinaryNatively();
+        ParseCache cache = o.cacheDir != null
+                ? new ParseCache(Paths.get(o.cacheDir), ParseCache.resolutionKey(jdk, o.classpathJars, units != null)) : null;
+        CallResolutionCache callCache = o.callCacheSize > 0 ? new CallResolutionCache(o.callCacheSize) : null;
+        Job job = new Job(rootPath, o.projectName, o.repoId, cfg, pool, cache, callCache, metrics);
+        job.fileBudgetMs = o.fileBudgetMs;
+        job.resolveBudgetMs = o.resolveBudgetMs;
+        job.lowMemory = o.lowMemory;
+        job.hash = o.hash;
+        job.mmapThreshold = o.mmapThreshold;
+        job.units = units;
+        try (JsonGenerator gen = factory.createGenerator(os, JsonEncoding.UTF8)) {
+            if (o.pretty && o.format.equals("json")) gen.useDefaultPrettyPrinter();
+            if (o.baseline != null) {
+                BaselineDelta.run(job, javaFiles, o.baseline, o.snapshotOut, gen);
+            } else if (o.format.equals("ndjson")) {
+                // Records are written while the second pass is still running.
+                NdjsonGraphWriter w = new NdjsonGraphWriter(gen, o.projectName, o.repoId);
+                buildGraph(job, javaFiles, w);
+                w.finish();
+            } else {
+                Graph g = new Graph();
+                g.project_name = o.projectName;
+                g.repo_id = o.repoId;
+                buildGraph(job, javaFiles, g);
+
+                // Rows are streamed straight to the destination; the document is never materialized as a String.
+                span = metrics.start();
+                GraphJsonWriter.write(gen, g);
+                if (text) gen.writeRaw('\n');
+                metrics.stop(Metrics.Phase.WRITE, span, g.types.size() + g.methods.size() + g.fields.size() + g.edgeCount());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.err.println(scanner.stats());
+        if (cache != null) System.err.println(cache.stats());
+        if (classpath != null) System.err.println(classpath.stats());
+        if (callCache != null) System.err.println(callCache.stats());
+        if (o.metrics) writeMetrics(o, metrics, scanner, cache, callCache);
+    }
+
+    private static void writeMetrics(Options o, Metrics metrics, FileScanner scanner, ParseCache cache,
+                                     CallResolutionCache callCache) throws IOException {
+        JsonFactory factory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (o.metricsOut == null) {
+            // one line, so it can be grepped out of a log
+            try (JsonGenerator gen = factory.createGenerator(System.err, JsonEncoding.UTF8)) {
+                metrics.write(gen, o, scanner, cache, callCache);
+                gen.writeRaw('\n');
+            }
+            System.err.flush();
+            return;
         }
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(o.metricsOut));
+             JsonGenerator gen = factory.createGenerator(os, JsonEncoding.UTF8)) {
+            gen.useDefaultPrettyPrinter();
+            metrics.write(gen, o, scanner, cache, callCache);
+            gen.writeRaw('\n');
+        }
+    }
+
+    // cbor and smile write the same document as json in a binary encoding that refers back to strings
+    // already written (stringref in CBOR, shared values in Smile), so the project/repo/FQN strings that
+    // repeat on every row are stored once.
+    static JsonFactory outputFactory(String format) {
+        switch (format) {
+            case "cbor": return CBORFactory.builder().enable(CBORGenerator.Feature.STRINGREF).build();
+            case "smile": return SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build();
+            default: return new JsonFactory();
+        }
+    }
+
+    // Jars of --classpath, then of --m2-repo (either may be null).
+    private static List<Path> classpathJars(String classpath, Path m2Repo) {
+        List<Path> jars = new ArrayList<>();
+        try {
+            if (classpath != null) jars.addAll(ClasspathIndex.classpathJars(classpath));
+            if (m2Repo != null) jars.addAll(ClasspathIndex.m2Jars(m2Repo));
+        } catch (IOException e) {
+            throw new UsageException("Cannot list the classpath jars: " + e.getMessage());
+        }
+        return jars;
+    }
+
+    // null without --classpath and --m2-repo; indexes persist under --cache-dir
+    private static ClasspathIndex classpathIndex(Options o, ForkJoinPool pool) throws IOException {
+        if (o.classpathJars == null) return null;
+        return new ClasspathIndex(o.classpathJars, o.cacheDir != null ? Paths.get(o.cacheDir).resolve("classpath") : null, pool);
+    }
+
+    static ParserConfiguration parserConfiguration(Path rootPath) throws IOException {
+        return parserConfiguration(rootPath, -1, null, JdkImage.current(), null);
+    }
+
+    // solverCacheSize bounds the units each worker's source-root solvers keep parsed (-1: unbounded, the
+    // solver's default); an unbounded cache ends up holding most of the repository per worker. units, when
+    // given, is consulted before those solvers (see UnitTypeSolver). JDK types come from jdk's module image,
+    // or by reflection when it is null; library types from classpath, when given, after the project's own.
+    static ParserConfiguration parserConfiguration(Path rootPath, long solverCacheSize, UnitTypeSolver.Units units,
+                                                   JdkImage jdk, ClasspathIndex classpath) throws IOException {
+        // Source roots from the build model (see SourceRoots); the whole tree when there are none.
+        List<Path> sourceRoots = SourceRoots.detect(rootPath);
+        if (sourceRoots.isEmpty()) sourceRoots = List.of(rootPath);
 
-        JavaSymbolSolver solver = new JavaSymbolSolver(typeSolver);
-        ParserConfiguration cfg = new ParserConfiguration()
+        // JavaParser's symbol solver caches resolved types on AST nodes and in per-solver facades, none of
+        // which is thread-safe, so every worker thread resolves through its own solver stack.
+        List<Path> solverRoots = sourceRoots;
+        ThreadLocalSymbolResolver solver = new ThreadLocalSymbolResolver(() -> newTypeSolver(solverRoots, solverCacheSize, units, jdk, classpath));
+        return new ParserConfiguration()
                 .setSymbolResolver(solver)
                 .setCharacterEncoding(StandardCharsets.UTF_8);
+    }
+
+    // Everything one parse run needs besides the file list.
+    static final class Job {
+        final Path root;
+        final String projectName;
+        final String repoId;
+        final ForkJoinPool pool;
+        final ParseCache cache; // null unless --cache-dir
+        final CallResolutionCache callCache; // null with --no-call-cache
+        final Metrics metrics; // Metrics.OFF unless --metrics
+        final ThreadLocal<JavaParser> parsers;
+        int fileBudgetMs;    // see Budget; 0 = unlimited
+        int resolveBudgetMs;
+        boolean lowMemory;   // see buildGraph
+        ContentHash hash = ContentHash.SHA1;
+        int mmapThreshold;   // see SourceFile
+        UnitTypeSolver.Units units; // null unless the configuration's solvers read from it
+
+        Job(Path root, String projectName, String repoId, ParserConfiguration cfg, ForkJoinPool pool, ParseCache cache,
+            CallResolutionCache callCache, Metrics metrics) {
+            this.root = root;
+            this.projectName = projectName;
+            this.repoId = repoId;
+            this.pool = pool;
+            this.cache = cache;
+            this.callCache = callCache;
+            this.metrics = metrics;
+            // JavaParser instances are not thread-safe; each worker gets its own over the shared configuration.
+            this.parsers = ThreadLocal.withInitial(() -> new JavaParser(cfg));
+        }
+    }
+
+    // Units handed to the pool ahead of the sink per worker with --low-memory.
+    static final int LOW_MEMORY_WINDOW_PER_THREAD = 4;
+    // Units each worker's symbol solver keeps parsed per source root with --low-memory.
+    static final long LOW_MEMORY_SOLVER_CACHE = 1_000;
 
-        StaticJavaParser.setConfiguration(cfg);
+    // Two passes over the files: type declarations first (they decide what counts as internal), then
+    // everything else. Normally the first pass keeps every unit for the second. With job.lowMemory it keeps
+    // only the declarations and the second pass parses each file again, with a bounded window of units in
+    // flight: the heap then holds a few ASTs per worker instead of the whole repository's, for roughly a
+    // second parse of every file.
+    static void buildGraph(Job job, List<Path> javaFiles, GraphSink sink) throws IOException {
+        int n = javaFiles.size();
+        String[] rels = new String[n];
+        String[] hashes = new String[n];
+        CompilationUnit[] parsed = new CompilationUnit[n];
+        ParseCache.Entry[] cached = new ParseCache.Entry[n]; // with lowMemory only hit[] is kept; see secondPass
+        boolean[] hit = new boolean[n];
+        @SuppressWarnings("unchecked")
+        List<ParseCache.TypeDecl>[] decls = new List[n]; // null for an unparsable file
 
-        // Parse all java files
-        List<Path> javaFiles = findJavaFiles(rootPath);
+        // Read and hash every file, then take it from the cache or parse the same bytes; slot i belongs to
+        // javaFiles.get(i).
+        Metrics.Span span = job.metrics.start();
+        job.pool.invoke(new IndexRange(0, n, i -> {
+            Path jf = javaFiles.get(i);
+            rels[i] = job.root.relativize(jf).toString();
+            Metrics.Span hashSpan = job.metrics.start();
+            SourceFile src = SourceFile.read(jf, job.mmapThreshold);
+            hashes[i] = src.hash(job.hash);
+            job.metrics.stop(Metrics.Phase.HASH, hashSpan, 1);
+            if (job.cache != null && !hashes[i].isEmpty()) {
+                cached[i] = job.cache.load(hashes[i]);
+                if (cached[i] != null) {
+                    decls[i] = cached[i].types;
+                    hit[i] = true;
+                    if (job.lowMemory) cached[i] = null;
+                    return;
+                }
+            }
+            CompilationUnit cu = parseFile(job, src);
+            if (cu == null) return; // unparsable file; skipped
+            decls[i] = typeDecls(cu);
+            if (!job.lowMemory) parsed[i] = cu;
+        }));
+        job.metrics.stop(Metrics.Phase.SCAN, span, n);
 
-        // First pass: collect internal types (FQNs)
+        // First pass: collect internal types (FQNs), in file order regardless of thread count
+        span = job.metrics.start();
         Map<String, TypeMeta> internalTypes = new LinkedHashMap<>();
-        Map<Path, CompilationUnit> units = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (decls[i] == null) continue;
+            for (ParseCache.TypeDecl d : decls[i]) {
+                internalTypes.putIfAbsent(d.fqn, new TypeMeta(d.fqn, d.name, rels[i], d.pkg, hashes[i]));
+            }
+        }
 
-        for (Path jf : javaFiles) {
-            try {
-                CompilationUnit cu = StaticJavaParser.parse(jf);
-                units.put(jf, cu);
-                cu.findAll(TypeDeclaration.class).forEach(td -> {
-                    String fqn = getFqn(cu, td);
-                    if (fqn != null && !fqn.isBlank()) {
-                        internalTypes.putIfAbsent(fqn, new TypeMeta(fqn, td.getNameAsString(), rootPath.relativize(jf).toString()));
-                    }
-                });
-            } catch (Exception ex) {
-                // skip unparsable file; still continue
+        SimpleNameIndex internalFqns = new SimpleNameIndex();
+        for (TypeMeta tm : internalTypes.values()) internalFqns.add(tm.fqn, tm.pkg);
+
+        // Emit types
+        List<Map<String, Object>> types = new ArrayList<>(internalTypes.size());
+        for (TypeMeta tm : internalTypes.values()) types.add(typeRow(job, tm));
+        sink.types(types);
+        if (job.units != null) job.units.publish(kept(parsed));
+        job.metrics.stop(Metrics.Phase.INDEX, span, types.size());
+
+        // Second pass: methods, fields, semantic relationships. Each unit is extracted into its own
+        // fragment on the pool; fragments are handed to the sink in file order as soon as they (and all
+        // earlier ones) are done, so output does not depend on scheduling.
+        span = job.metrics.start();
+        List<Supplier<Graph>> work = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (decls[i] == null) continue;
+            Path file = javaFiles.get(i);
+            String rel = rels[i], hash = hashes[i];
+            CompilationUnit cu = parsed[i]; // null when cached or with lowMemory
+            ParseCache.Entry entry = cached[i]; // null with lowMemory
+            boolean fromCache = hit[i];
+            parsed[i] = null;
+            cached[i] = null;
+            work.add(() -> secondPass(job, file, rel, hash, cu, fromCache, entry, internalTypes, internalFqns));
+        }
+        int window = job.lowMemory ? LOW_MEMORY_WINDOW_PER_THREAD * job.pool.getParallelism() : work.size();
+        ArrayDeque<CompletableFuture<Graph>> inFlight = new ArrayDeque<>();
+        for (int next = 0; next < work.size() || !inFlight.isEmpty(); ) {
+            while (next < work.size() && inFlight.size() < window) {
+                inFlight.add(CompletableFuture.supplyAsync(work.get(next), job.pool));
+                work.set(next++, null);
             }
+            sink.unit(inFlight.poll().join());
         }
+        if (job.units != null) job.units.clear();
+        job.metrics.stop(Metrics.Phase.EXTRACT, span, work.size());
+    }
 
-        Set<String> internalFqns = internalTypes.keySet();
+    static List<CompilationUnit> kept(CompilationUnit[] parsed) {
+        List<CompilationUnit> out = new ArrayList<>();
+        for (CompilationUnit cu : parsed) {
+            if (cu != null) out.add(cu);
+        }
+        return out;
+    }
 
-        Graph g = new Graph();
-        g.project_name = projectName;
-        g.repo_id = repoId;
+    // fromCache: the first pass found an entry for the file. It is passed as hit, or with lowMemory loaded again
+    // here, since holding every hit's fragment from the scan to its turn would make the heap scale with the repo.
+    private static Graph secondPass(Job job, Path file, String rel, String hash, CompilationUnit cu, boolean fromCache,
+                                    ParseCache.Entry hit, Map<String, TypeMeta> internalTypes, SimpleNameIndex internalFqns) {
+        if (fromCache && hit == null) hit = job.cache.load(hash); // null if it went away meanwhile: a miss
+        if (hit != null) {
+            if (reusable(hit, internalTypes, internalFqns)) {
+                job.cache.hits.incrementAndGet();
+                ParseCache.rebind(hit.fragment, job.projectName, job.repoId, rel);
+                return hit.fragment;
+            }
+            job.cache.stale.incrementAndGet();
+            cu = parseFile(job, file);
+            if (cu == null) return new Graph();
+        } else {
+            if (job.cache != null) job.cache.misses.incrementAndGet();
+            if (cu == null) cu = parseFile(job, SourceFile.read(file, job.mmapThreshold), "reparsed"); // lowMemory
+            if (cu == null) return new Graph();
+        }
 
-        // Emit types
-        for (TypeMeta tm : internalTypes.values()) {
-            Map<String, Object> row = new LinkedHashMap<>();
-            row.put("project_name", projectName);
-            row.put("repo_id", repoId);
-            row.put("fqn", tm.fqn);
-            row.put("name", tm.name);
-            row.put("file", tm.file);
-            row.put("file_hash", sha1(readBytesSafe(rootPath.resolve(tm.file))));
-            g.types.add(row);
+        Graph fragment = extractUnit(job, cu, rel, internalFqns);
+        // a degraded result depends on timing, not only on the file, so it is not kept
+        if (job.cache != null && !hash.isEmpty() && fragment.degraded.isEmpty()) {
+            job.cache.store(hash, new ParseCache.Entry(typeDecls(cu), dependencyHashes(fragment, internalTypes),
+                    unresolvedNames(cu, internalFqns), fragment));
         }
+        return fragment;
+    }
 
-        // Second pass: methods, fields, semantic relationships
-        for (Map.Entry<Path, CompilationUnit> e : units.entrySet()) {
-            Path file = e.getKey();
-            CompilationUnit cu = e.getValue();
-            String rel = rootPath.relativize(file).toString();
+    static Map<String, Object> typeRow(Job job, TypeMeta tm) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("project_name", job.projectName);
+        row.put("repo_id", job.repoId);
+        row.put("fqn", tm.fqn);
+        row.put("name", tm.name);
+        row.put("file", tm.file);
+        row.put("file_hash", tm.fileHash);
+        return row;
+    }
+
+    static CompilationUnit parseFile(Job job, Path file) {
+        return parseFile(job, SourceFile.read(file, job.mmapThreshold));
+    }
+
+    static CompilationUnit parseFile(Job job, SourceFile src) {
+        return parseFile(job, src, "parsed");
+    }
+
+    // parsedOutcome is what a successful parse is counted as under the "files" outcomes
+    private static CompilationUnit parseFile(Job job, SourceFile src, String parsedOutcome) {
+        ParserEvents.FileParse event = new ParserEvents.FileParse();
+        event.begin();
+        Metrics.Span span = job.metrics.start();
+        CompilationUnit cu = null;
+        String outcome = parsedOutcome;
+        try {
+            if (src.error != null) throw src.error;
+            JavaParser parser = job.parsers.get();
+            Charset encoding = parser.getParserConfiguration().getCharacterEncoding();
+            ParseResult<CompilationUnit> r = parser.parse(src.open(), encoding);
+            if (r.isSuccessful() && r.getResult().isPresent()) {
+                cu = r.getResult().get();
+                cu.setStorage(src.path, encoding); // as JavaParser.parse(Path) does
+            } else {
+                outcome = "failed:syntax";
+            }
+        } catch (Exception ex) {
+            // skip unparsable file; still continue
+            outcome = "failed:" + Metrics.reason(ex);
+        }
+        job.metrics.stop(Metrics.Phase.PARSE, span, 1);
+        job.metrics.outcome("files", outcome);
+        if (event.shouldCommit()) {
+            event.file = job.root.relativize(src.path).toString();
+            event.outcome = outcome;
+            event.commit();
+        }
+        return cu;
+    }
+
+    static List<ParseCache.TypeDecl> typeDecls(CompilationUnit cu) {
+        List<ParseCache.TypeDecl> out = new ArrayList<>();
+        String pkg = cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
+        cu.findAll(TypeDeclaration.class).forEach(td -> {
+            String fqn = getFqn(cu, td);
+            if (fqn != null && !fqn.isBlank()) out.add(new ParseCache.TypeDecl(fqn, td.getNameAsString(), pkg));
+        });
+        return out;
+    }
+
+    // Internal types a fragment resolved against, with the hash of the file each lives in right now.
+    private static Map<String, String> dependencyHashes(Graph f, Map<String, TypeMeta> internalTypes) {
+        Set<String> fqns = new TreeSet<>();
+        for (int i = 0; i < f.dependencies.size(); i++) fqns.add(f.name(f.dependencies.get(i, 1)));
+        for (int i = 0; i < f.calls.size(); i++) fqns.add(f.name(f.calls.get(i, 2)));
+        for (int i = 0; i < f.extends_rel.size(); i++) fqns.add(f.name(f.extends_rel.get(i, 1)));
+        for (int i = 0; i < f.implements_rel.size(); i++) fqns.add(f.name(f.implements_rel.get(i, 1)));
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String fqn : fqns) {
+            TypeMeta tm = internalTypes.get(fqn);
+            out.put(fqn, tm == null ? "" : tm.fileHash);
+        }
+        return out;
+    }
 
+    // Simple names the unit uses as a type, or as the scope of a call or field access (Foo.bar()), that no
+    // internal type has. A type added under one of them later can turn the reference into an edge.
+    private static Set<String> unresolvedNames(CompilationUnit cu, SimpleNameIndex internalFqns) {
+        Set<String> out = new TreeSet<>();
+        for (ClassOrInterfaceType t : cu.findAll(ClassOrInterfaceType.class)) out.add(t.getNameAsString());
+        for (MethodCallExpr ce : cu.findAll(MethodCallExpr.class)) {
+            ce.getScope().filter(Expression::isNameExpr).ifPresent(e -> out.add(e.asNameExpr().getNameAsString()));
+        }
+        for (FieldAccessExpr fa : cu.findAll(FieldAccessExpr.class)) {
+            if (fa.getScope().isNameExpr()) out.add(fa.getScope().asNameExpr().getNameAsString());
+        }
+        out.removeIf(internalFqns::hasSimpleName);
+        return out;
+    }
+
+    // A cached fragment stands while every internal type it resolved against is unchanged and none of the
+    // names it could not resolve has become an internal type since.
+    private static boolean reusable(ParseCache.Entry hit, Map<String, TypeMeta> internalTypes, SimpleNameIndex internalFqns) {
+        if (hit.deps == null || hit.unresolved == null) return false;
+        for (Map.Entry<String, String> d : hit.deps.entrySet()) {
+            TypeMeta tm = internalTypes.get(d.getKey());
+            if (tm == null || !tm.fileHash.equals(d.getValue())) return false;
+        }
+        for (String name : hit.unresolved) {
+            if (internalFqns.hasSimpleName(name)) return false;
+        }
+        return true;
+    }
+
+    static Graph extractUnit(Job job, CompilationUnit cu, String rel, SimpleNameIndex internalFqns) {
+        Metrics.Span span = job.metrics.start();
+        Graph g = new Graph();
+        g.project_name = job.projectName;
+        g.repo_id = job.repoId;
+        SimpleNameIndex.Scope scope = SimpleNameIndex.Scope.of(cu);
+
+        Budget budget = Budget.enter(job.fileBudgetMs, job.resolveBudgetMs);
+        try {
             for (TypeDeclaration<?> td : cu.findAll(TypeDeclaration.class)) {
                 if (!(td instanceof ClassOrInterfaceDeclaration || td instanceof EnumDeclaration || td instanceof RecordDeclaration)) {
                     continue;
@@ -120,231 +785,264 @@ public class SemanticParserCli {
                 String ownerFqn = getFqn(cu, td);
                 if (ownerFqn == null || !internalFqns.contains(ownerFqn)) continue;
 
-                // extends / implements (semantic best-effort)
-                if (td instanceof ClassOrInterfaceDeclaration) {
-                    ClassOrInterfaceDeclaration cid = (ClassOrInterfaceDeclaration) td;
-                    for (ClassOrInterfaceType ext : cid.getExtendedTypes()) {
-                        String target = resolveTypeFqn(ext, internalFqns);
-                        if (target != null) g.extends_rel.add(relPair(projectName, repoId, ownerFqn, target));
-                    }
-                    for (ClassOrInterfaceType impl : cid.getImplementedTypes()) {
-                        String target = resolveTypeFqn(impl, internalFqns);
-                        if (target != null) g.implements_rel.add(relPair(projectName, repoId, ownerFqn, target));
-                    }
+                ParserEvents.TypeExtraction event = new ParserEvents.TypeExtraction();
+                event.begin();
+                int methods = g.methods.size(), fields = g.fields.size(), calls = g.calls.size();
+                extractType(job, g, td, ownerFqn, rel, internalFqns, scope, budget);
+                if (event.shouldCommit()) {
+                    event.file = rel;
+                    event.ownerFqn = ownerFqn;
+                    event.methods = g.methods.size() - methods;
+                    event.fields = g.fields.size() - fields;
+                    event.calls = g.calls.size() - calls;
+                    event.commit();
                 }
+            }
+        } finally {
+            if (budget != null) budget.exit();
+        }
+        if (budget != null && budget.degraded()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("project_name", job.projectName);
+            row.put("repo_id", job.repoId);
+            row.put("file", rel);
+            row.put("reason", budget.fileSpent ? "file_budget" : "resolve_budget");
+            row.put("abandoned_calls", budget.abandoned);
+            g.degraded.add(row);
+            job.metrics.outcome("files", "degraded:" + row.get("reason"));
+        }
+        job.metrics.stop(Metrics.Phase.EXTRACT_UNIT, span, 1);
+        return g;
+    }
 
-                // fields
-                for (FieldDeclaration fd : td.getFields()) {
-                    for (VariableDeclarator var : fd.getVariables()) {
-                        String fname = var.getNameAsString();
-                        String ftype = safeDescribeType(var.getType(), internalFqns);
-                        Map<String, Object> row = new LinkedHashMap<>();
-                        row.put("project_name", projectName);
-                        row.put("repo_id", repoId);
-                        row.put("owner_fqn", ownerFqn);
-                        row.put("name", fname);
-                        row.put("type", ftype);
-                        g.fields.add(row);
-
-                        String dep = extractInternalFromTypeString(ftype, internalFqns);
-                        if (dep != null && !dep.equals(ownerFqn)) {
-                            g.dependencies.add(depEdge(projectName, repoId, ownerFqn, dep, "field", rel));
-                        }
-                    }
+    // Fields, methods, calls and extends/implements of one internal type declaration, appended to g.
+    private static void extractType(Job job, Graph g, TypeDeclaration<?> td, String ownerFqn, String rel,
+                                    SimpleNameIndex internalFqns, SimpleNameIndex.Scope scope, Budget budget) {
+        String projectName = job.projectName, repoId = job.repoId;
+
+        // extends / implements (semantic best-effort)
+        if (td instanceof ClassOrInterfaceDeclaration) {
+            ClassOrInterfaceDeclaration cid = (ClassOrInterfaceDeclaration) td;
+            for (ClassOrInterfaceType ext : cid.getExtendedTypes()) {
+                String target = resolveTypeFqn(ext, internalFqns, scope);
+                if (target != null) g.addExtends(ownerFqn, target);
+            }
+            for (ClassOrInterfaceType impl : cid.getImplementedTypes()) {
+                String target = resolveTypeFqn(impl, internalFqns, scope);
+                if (target != null) g.addImplements(ownerFqn, target);
+            }
+        }
+
+        // fields
+        for (FieldDeclaration fd : td.getFields()) {
+            for (VariableDeclarator var : fd.getVariables()) {
+                String fname = var.getNameAsString();
+                String ftype = safeDescribeType(job.metrics, var.getType(), internalFqns);
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("project_name", projectName);
+                row.put("repo_id", repoId);
+                row.put("owner_fqn", ownerFqn);
+                row.put("name", fname);
+                row.put("type", ftype);
+                g.fields.add(row);
+
+                String dep = extractInternalFromTypeString(ftype, internalFqns, scope);
+                if (dep != null && !dep.equals(ownerFqn)) {
+                    g.addDependency(ownerFqn, dep, "field", rel);
                 }
+            }
+        }
 
-                // methods
-                List<CallableDeclaration<?>> callables = new ArrayList<>();
-                td.getMembers().forEach(m -> {
-                    if (m instanceof MethodDeclaration) callables.add((MethodDeclaration)m);
-                    if (m instanceof ConstructorDeclaration) callables.add((ConstructorDeclaration)m);
-                });
-
-                for (CallableDeclaration<?> md : callables) {
-                    String mName = (md instanceof ConstructorDeclaration) ? td.getNameAsString() : ((MethodDeclaration) md).getNameAsString();
-                    List<Map<String, String>> params = new ArrayList<>();
-                    List<String> paramTypes = new ArrayList<>();
-                    for (Parameter p : md.getParameters()) {
-                        String pt = safeDescribeType(p.getType(), internalFqns);
-                        params.add(Map.of("name", p.getNameAsString(), "type", pt));
-                        paramTypes.add(pt);
-                        String dep = extractInternalFromTypeString(pt, internalFqns);
-                        if (dep != null && !dep.equals(ownerFqn)) {
-                            g.dependencies.add(depEdge(projectName, repoId, ownerFqn, dep, "param", rel));
-                        }
+        // methods
+        List<CallableDeclaration<?>> callables = new ArrayList<>();
+        td.getMembers().forEach(m -> {
+            if (m instanceof MethodDeclaration) callables.add((MethodDeclaration)m);
+            if (m instanceof ConstructorDeclaration) callables.add((ConstructorDeclaration)m);
+        });
+
+        for (CallableDeclaration<?> md : callables) {
+            String mName = (md instanceof ConstructorDeclaration) ? td.getNameAsString() : ((MethodDeclaration) md).getNameAsString();
+            List<Map<String, String>> params = new ArrayList<>();
+            List<String> paramTypes = new ArrayList<>();
+            for (Parameter p : md.getParameters()) {
+                String pt = safeDescribeType(job.metrics, p.getType(), internalFqns);
+                Map<String, String> param = new LinkedHashMap<>();
+                param.put("name", p.getNameAsString());
+                param.put("type", pt);
+                params.add(param);
+                paramTypes.add(pt);
+                String dep = extractInternalFromTypeString(pt, internalFqns, scope);
+                if (dep != null && !dep.equals(ownerFqn)) {
+                    g.addDependency(ownerFqn, dep, "param", rel);
+                }
+            }
+            String signature = mName + "(" + String.join(",", paramTypes) + ")";
+
+            String returnType = "void";
+            if (md instanceof MethodDeclaration) {
+                returnType = safeDescribeType(job.metrics, ((MethodDeclaration) md).getType(), internalFqns);
+                String dep = extractInternalFromTypeString(returnType, internalFqns, scope);
+                if (dep != null && !dep.equals(ownerFqn)) {
+                    g.addDependency(ownerFqn, dep, "return", rel);
+                }
+            }
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("project_name", projectName);
+            row.put("repo_id", repoId);
+            row.put("owner_fqn", ownerFqn);
+            row.put("name", mName);
+            row.put("signature", signature);
+            row.put("returnType", returnType);
+            row.put("params", params);
+            row.put("file", rel);
+            if (md.getRange().isPresent()) {
+                row.put("beginLine", md.getRange().get().begin.line);
+                row.put("endLine", md.getRange().get().end.line);
+            }
+            // hash of method/ctor body (semantic diffing of business logic)
+            String bodyText = "";
+            try {
+                if (md instanceof MethodDeclaration) {
+                    MethodDeclaration md2 = (MethodDeclaration) md;
+                    bodyText = md2.getBody().map(Object::toString).orElse("");
+                } else if (md instanceof ConstructorDeclaration) {
+                    ConstructorDeclaration cd2 = (ConstructorDeclaration) md;
+                    bodyText = cd2.getBody().toString();
+                }
+            } catch (Exception ignore) {}
+            row.put("body_hash", job.hash.of(bodyText.getBytes(StandardCharsets.UTF_8)));
+            g.methods.add(row);
+
+            // calls inside this method/ctor
+            List<MethodCallExpr> calls = md.findAll(MethodCallExpr.class);
+            for (MethodCallExpr ce : calls) {
+                if (budget != null && budget.fileSpent()) {
+                    budget.abandoned++;
+                    job.metrics.outcome("calls", "skipped:file_budget");
+                    continue;
+                }
+                ParserEvents.CallResolution event = new ParserEvents.CallResolution();
+                event.begin();
+                if (budget != null) budget.beginResolve();
+                // Argument types key the resolution cache, so they are worked out before resolving only for
+                // calls the cache can hold (scoped ones); otherwise only for the edges of internal calls.
+                List<ResolvedType> resolvedArgs = null;
+                String key = null;
+                CallResolutionCache.Target target = null;
+                boolean cached = false;
+                try {
+                    if (job.callCache != null && ce.getScope().isPresent()) {
+                        resolvedArgs = argTypes(ce);
+                        key = CallResolutionCache.key(ce, resolvedArgs);
+                        if (key != null) target = job.callCache.get(key);
                     }
-                    String signature = mName + "(" + String.join(",", paramTypes) + ")";
-
-                    String returnType = "void";
-                    if (md instanceof MethodDeclaration) {
-                        returnType = safeDescribeType(((MethodDeclaration) md).getType(), internalFqns);
-                        String dep = extractInternalFromTypeString(returnType, internalFqns);
-                        if (dep != null && !dep.equals(ownerFqn)) {
-                            g.dependencies.add(depEdge(projectName, repoId, ownerFqn, dep, "return", rel));
-                        }
+                    cached = target != null;
+                    if (!cached) {
+                        Metrics.Span resolveSpan = job.metrics.start();
+                        target = resolveCall(ce);
+                        job.metrics.stop(Metrics.Phase.RESOLVE_CALL, resolveSpan, 1);
                     }
+                } catch (Budget.Exceeded e) {
+                    // cut off while typing the arguments; the call is not resolved at all
+                    target = CallResolutionCache.Target.unresolved(Metrics.reason(e));
+                }
+                boolean cut = budget != null && budget.endResolve();
+                if (!cached && !cut) {
+                    // a resolution cut off by the budget says nothing about the call, so it is not remembered
+                    if (key != null) job.callCache.put(key, target);
+                    else if (job.callCache != null) job.callCache.uncacheable.increment();
+                }
+                String outcome = !target.resolved() ? "unresolved:" + target.failure
+                        : internalFqns.contains(target.owner) ? "internal" : "external";
+                job.metrics.outcome("calls", outcome);
+                if (event.shouldCommit()) {
+                    event.file = rel;
+                    event.ownerFqn = ownerFqn;
+                    event.caller = signature;
+                    event.method = ce.getNameAsString();
+                    event.line = ce.getBegin().map(pos -> pos.line).orElse(-1);
+                    event.target = target.resolved() ? target.owner + "#" + target.signature : null;
+                    event.outcome = outcome;
+                    event.cached = cached;
+                    event.commit();
+                }
+                if (!outcome.equals("internal")) continue;
 
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    row.put("project_name", projectName);
-                    row.put("repo_id", repoId);
-                    row.put("owner_fqn", ownerFqn);
-                    row.put("name", mName);
-                    row.put("signature", signature);
-                    row.put("returnType", returnType);
-                    row.put("params", params);
-                    row.put("file", rel);
-                    if (md.getRange().isPresent()) {
-                        row.put("beginLine", md.getRange().get().begin.line);
-                        row.put("endLine", md.getRange().get().end.line);
-                    }
-                    // hash of method/ctor body (semantic diffing of business logic)
-                    String bodyText = "";
+                // capture call-site arguments (expressions + best-effort types)
+                List<String> argExprs = new ArrayList<>();
+                for (Expression a : ce.getArguments()) argExprs.add(a.toString());
+                if (resolvedArgs == null) {
                     try {
-                        if (md instanceof MethodDeclaration) {
-                            MethodDeclaration md2 = (MethodDeclaration) md;
-                            bodyText = md2.getBody().map(Object::toString).orElse("");
-                        } else if (md instanceof ConstructorDeclaration) {
-                            ConstructorDeclaration cd2 = (ConstructorDeclaration) md;
-                            bodyText = cd2.getBody().toString();
-                        }
-                    } catch (Exception ignore) {}
-                    row.put("body_hash", sha1(bodyText.getBytes(StandardCharsets.UTF_8)));
-                    g.methods.add(row);
-
-                    // calls inside this method/ctor
-                    List<MethodCallExpr> calls = md.findAll(MethodCallExpr.class);
-                    for (MethodCallExpr ce : calls) {
-                        try {
-                            ResolvedMethodDeclaration rmd = ce.resolve();
-                            String declType = rmd.declaringType().getQualifiedName();
-                            if (!internalFqns.contains(declType)) continue;
-
-                            // build callee signature from resolved
-                            List<String> calleeParamTypes = new ArrayList<>();
-                            for (int i = 0; i < rmd.getNumberOfParams(); i++) {
-                                String t = rmd.getParam(i).getType().describe();
-                                calleeParamTypes.add(normalizeTypeString(t));
-                            }
-                            String calleeSig = rmd.getName() + "(" + String.join(",", calleeParamTypes) + ")";
-                            // capture call-site arguments (expressions + best-effort types)
-                            List<String> argExprs = new ArrayList<>();
-                            List<String> argTypes = new ArrayList<>();
-                            for (int ai = 0; ai < ce.getArguments().size(); ai++) {
-                                try {
-                                    var ex = ce.getArgument(ai);
-                                    argExprs.add(ex.toString());
-                                    try {
-                                        ResolvedType at = ex.calculateResolvedType();
-                                        argTypes.add(normalizeTypeString(at.describe()));
-                                    } catch (Throwable t2) {
-                                        argTypes.add("");
-                                    }
-                                } catch (Throwable t3) {
-                                    argExprs.add("");
-                                    argTypes.add("");
-                                }
-                            }
-
-                            Map<String, Object> edge = new LinkedHashMap<>();
-                            edge.put("project_name", projectName);
-                            edge.put("repo_id", repoId);
-                            edge.put("from_owner_fqn", ownerFqn);
-                            edge.put("from_signature", signature);
-                            edge.put("to_owner_fqn", declType);
-                            edge.put("to_signature", calleeSig);
-                            edge.put("file", rel);
-                            edge.put("arg_exprs", argExprs);
-                            edge.put("arg_types", argTypes);
-                            g.calls.add(edge);
-
-                            // also dependency
-                            if (!declType.equals(ownerFqn)) {
-                                g.dependencies.add(depEdge(projectName, repoId, ownerFqn, declType, "call", rel));
-                            }
-                        } catch (Throwable ignore) {
-                            // resolution may fail for some calls; ignore
-                        }
+                        resolvedArgs = argTypes(ce);
+                    } catch (Budget.Exceeded e) {
+                        resolvedArgs = Collections.nCopies(argExprs.size(), null);
                     }
                 }
-            }
-        }
+                List<String> argTypes = new ArrayList<>(resolvedArgs.size());
+                for (ResolvedType t : resolvedArgs) argTypes.add(normalizeTypeString(describe(t)));
 
-        // Deduplicate edges
-        g.dependencies = dedupeEdges(g.dependencies, List.of("from_fqn","to_fqn","via","file"));
-        g.calls = dedupeEdges(g.calls, List.of("from_owner_fqn","from_signature","to_owner_fqn","to_signature","file"));
-        g.extends_rel = dedupeEdges(g.extends_rel, List.of("child_fqn","parent_fqn"));
-        g.implements_rel = dedupeEdges(g.implements_rel, List.of("child_fqn","iface_fqn"));
+                g.addCall(ownerFqn, signature, target.owner, target.signature, rel, argExprs, argTypes);
 
-        ObjectMapper om = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
-        String json = om.writeValueAsString(toOutputShape(g));
+                // also dependency
+                if (!target.owner.equals(ownerFqn)) {
+                    g.addDependency(ownerFqn, target.owner, "call", rel);
+                }
+            }
+        }
+    }
 
-        if (out != null && !out.isBlank()) {
-            Files.writeString(Paths.get(out), json, StandardCharsets.UTF_8);
-        } else {
-            System.out.println(json);
-        }
-    }
-
-    private static Map<String,Object> toOutputShape(Graph g) {
-        Map<String,Object> out = new LinkedHashMap<>();
-        out.put("project_name", g.project_name);
-        out.put("repo_id", g.repo_id);
-        out.put("types", g.types);
-        out.put("methods", g.methods);
-        out.put("fields", g.fields);
-        out.put("dependencies", g.dependencies);
-
-        // keep compatibility with existing GraphBuilder by using keys "extends" and "implements"
-        List<Map<String,Object>> ext = g.extends_rel.stream().map(m -> Map.<String,Object>of(
-                "project_name", m.get("project_name"),
-                "repo_id", m.get("repo_id"),
-                "child_fqn", m.get("child_fqn"),
-                "parent_ref", m.get("parent_fqn")
-        )).collect(Collectors.toList());
-        List<Map<String,Object>> impl = g.implements_rel.stream().map(m -> Map.<String,Object>of(
-                "project_name", m.get("project_name"),
-                "repo_id", m.get("repo_id"),
-                "child_fqn", m.get("child_fqn"),
-                "iface_ref", m.get("iface_fqn")
-        )).collect(Collectors.toList());
-        out.put("extends", ext);
-        out.put("implements", impl);
-        out.put("calls", g.calls);
+    // Resolved type of each argument of a call, null where it cannot be worked out. A spent budget is not
+    // one of those failures: Budget.Exceeded is rethrown so that the caller cuts the call off.
+    private static List<ResolvedType> argTypes(MethodCallExpr ce) {
+        List<ResolvedType> out = new ArrayList<>(ce.getArguments().size());
+        for (Expression a : ce.getArguments()) {
+            try {
+                out.add(a.calculateResolvedType());
+            } catch (Budget.Exceeded e) {
+                throw e;
+            } catch (Throwable t) {
+                out.add(null);
+            }
+        }
         return out;
     }
 
-    private static Map<String, Object> relPair(String p, String r, String child, String parent) {
-        Map<String,Object> m = new LinkedHashMap<>();
-        m.put("project_name", p);
-        m.put("repo_id", r);
-        m.put("child_fqn", child);
-        // store resolved fqn in parent_fqn/iface_fqn then mapped to parent_ref/iface_ref
-        m.put("parent_fqn", parent);
-        m.put("iface_fqn", parent);
-        return m;
+    // "" for a type that did not resolve or cannot be described
+    private static String describe(ResolvedType t) {
+        if (t == null) return "";
+        try {
+            return t.describe();
+        } catch (RuntimeException e) {
+            return "";
+        }
     }
 
-    private static Map<String, Object> depEdge(String p, String r, String from, String to, String via, String file) {
-        Map<String,Object> m = new LinkedHashMap<>();
-        m.put("project_name", p);
-        m.put("repo_id", r);
-        m.put("from_fqn", from);
-        m.put("to_fqn", to);
-        m.put("to_simple", simpleName(to));
-        m.put("via", via);
-        m.put("file", file);
-        return m;
+    // Declaring type and signature of the method a call binds to; resolution may fail for some calls.
+    private static CallResolutionCache.Target resolveCall(MethodCallExpr ce) {
+        try {
+            ResolvedMethodDeclaration rmd = ce.resolve();
+            // build callee signature from resolved
+            List<String> calleeParamTypes = new ArrayList<>();
+            for (int i = 0; i < rmd.getNumberOfParams(); i++) {
+                String t = rmd.getParam(i).getType().describe();
+                calleeParamTypes.add(normalizeTypeString(t));
+            }
+            String calleeSig = rmd.getName() + "(" + String.join(",", calleeParamTypes) + ")";
+            return new CallResolutionCache.Target(rmd.declaringType().getQualifiedName(), calleeSig);
+        } catch (Throwable ex) {
+            return CallResolutionCache.Target.unresolved(Metrics.reason(ex));
+        }
     }
 
     private static String require(Map<String,String> a, String k) {
         if (!a.containsKey(k) || a.get(k)==null || a.get(k).isBlank()) {
-            System.err.println("Missing required arg: --" + k);
-            System.exit(2);
+            throw new UsageException("Missing required arg: --" + k);
         }
         return a.get(k);
     }
 
-    private static Map<String,String> parseArgs(String[] args) {
+    static Map<String,String> parseArgs(String[] args) {
         Map<String,String> out = new HashMap<>();
         for (int i=0;i<args.length;i++) {
             String s = args[i];
@@ -361,43 +1059,92 @@ public class SemanticParserCli {
         return out;
     }
 
-    private static List<Path> findJavaFiles(Path root) throws IOException {
-        try (var stream = Files.walk(root)) {
-            return stream
-                    .filter(p -> Files.isRegularFile(p) && p.toString().toLowerCase().endsWith(".java"))
-                    .collect(Collectors.toList());
+    private static TypeSolver newTypeSolver(List<Path> sourceRoots, long cacheSize, UnitTypeSolver.Units units,
+                                            JdkImage jdk, ClasspathIndex classpath) {
+        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
+        typeSolver.add(jdk != null ? new ClassFileTypeSolver(List.of(jdk)) : new ReflectionTypeSolver());
+        if (units != null) typeSolver.add(new UnitTypeSolver(units));
+
+        for (Path sr : sourceRoots) {
+            if (Files.isDirectory(sr)) {
+                typeSolver.add(new JavaParserTypeSolver(sr,
+                        new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.BLEEDING_EDGE), cacheSize));
+            }
         }
+        // last, so that the project's sources win over an installed copy of the project itself
+        if (classpath != null) typeSolver.add(new ClassFileTypeSolver(List.of(classpath)));
+        return new Budget.CheckingTypeSolver(typeSolver);
     }
 
-    private static List<Path> detectSourceRoots(Path root) throws IOException {
-        List<Path> candidates = new ArrayList<>();
-        Path m1 = root.resolve("src/main/java");
-        Path m2 = root.resolve("src/test/java");
-        if (Files.isDirectory(m1)) candidates.add(m1);
-        if (Files.isDirectory(m2)) candidates.add(m2);
+    // Symbol resolver installed on every parsed unit; delegates to a solver owned by the calling thread.
+    private static class ThreadLocalSymbolResolver implements SymbolResolver {
+        private final ThreadLocal<JavaSymbolSolver> local;
 
-        // multi-module: search for any */src/main/java
-        try (var stream = Files.walk(root, 4)) {
-            stream.filter(p -> p.endsWith("src/main/java") && Files.isDirectory(p))
-                  .forEach(candidates::add);
-            stream.filter(p -> p.endsWith("src/test/java") && Files.isDirectory(p))
-                  .forEach(candidates::add);
-        } catch (Exception ignore) {}
-        return candidates.stream().distinct().collect(Collectors.toList());
+        ThreadLocalSymbolResolver(Supplier<TypeSolver> typeSolvers) {
+            this.local = ThreadLocal.withInitial(() -> new JavaSymbolSolver(typeSolvers.get()));
+        }
+
+        @Override
+        public <T> T resolveDeclaration(Node node, Class<T> resultClass) {
+            return local.get().resolveDeclaration(node, resultClass);
+        }
+
+        @Override
+        public <T> T toResolvedType(com.github.javaparser.ast.type.Type javaparserType, Class<T> resultClass) {
+            return local.get().toResolvedType(javaparserType, resultClass);
+        }
+
+        @Override
+        public ResolvedType calculateType(Expression expression) {
+            return local.get().calculateType(expression);
+        }
+
+        @Override
+        public ResolvedReferenceTypeDeclaration toTypeDeclaration(Node node) {
+            return local.get().toTypeDeclaration(node);
+        }
     }
 
-    private static byte[] readBytesSafe(Path p) {
-        try { return Files.readAllBytes(p); } catch (Exception e) { return new byte[0]; }
+    static int intArg(Map<String,String> a, String k, int def) {
+        return intArg(a, k, def, 1);
     }
 
-    private static String sha1(byte[] b) {
+    // min 0 for flags where 0 means "off" or "unlimited"
+    static int intArg(Map<String,String> a, String k, int def, int min) {
+        String v = a.get(k);
+        if (v == null) return def;
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] d = md.digest(b);
-            StringBuilder sb = new StringBuilder();
-            for (byte x: d) sb.append(String.format("%02x", x));
-            return sb.toString();
-        } catch (Exception e) { return ""; }
+            int n = Integer.parseInt(v.trim());
+            if (n >= min) return n;
+        } catch (NumberFormatException ignore) {}
+        throw new UsageException("Invalid value for --" + k + ": " + v);
+    }
+
+    // Splits [lo, hi) in halves down to single indices so idle workers can steal the larger halves.
+    static class IndexRange extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+        private final IntConsumer body;
+
+        IndexRange(int lo, int hi, IntConsumer body) {
+            this.lo = lo; this.hi = hi; this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= 0) return;
+            if (hi - lo == 1) {
+                body.accept(lo);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new IndexRange(lo, mid, body), new IndexRange(mid, hi, body));
+        }
+    }
+
+    // The files a run with default flags parses (see FileScanner).
+    static List<Path> findJavaFiles(Path root) {
+        return FileScanner.standard().scan(root, ForkJoinPool.commonPool());
     }
 
     private static String getFqn(CompilationUnit cu, TypeDeclaration<?> td) {
@@ -412,30 +1159,29 @@ public class SemanticParserCli {
         return pkg + "." + name;
     }
 
-    private static String resolveTypeFqn(ClassOrInterfaceType t, Set<String> internal) {
+    private static String resolveTypeFqn(ClassOrInterfaceType t, SimpleNameIndex internal, SimpleNameIndex.Scope scope) {
         // best-effort: resolve and check internal
         try {
             // ClassOrInterfaceType#resolve() already returns a resolved type in modern JavaParser versions.
             ResolvedType rt = t.resolve();
             String q = rt.describe();
             String norm = normalizeTypeString(q);
-            String internalHit = extractInternalFromTypeString(norm, internal);
+            String internalHit = extractInternalFromTypeString(norm, internal, scope);
             if (internalHit != null) return internalHit;
         } catch (Throwable ignore) {}
-        // fallback on simple name matching
-        String simple = t.getNameAsString();
-        for (String fqn : internal) {
-            if (fqn.endsWith("." + simple) || fqn.endsWith("$" + simple) || fqn.equals(simple)) return fqn;
-        }
-        return null;
+        // fallback on name matching
+        return internal.lookup(t.getNameWithScope(), scope);
     }
 
-    private static String safeDescribeType(com.github.javaparser.ast.type.Type t, Set<String> internal) {
+    private static String safeDescribeType(Metrics metrics, com.github.javaparser.ast.type.Type t, SimpleNameIndex internal) {
         try {
             ResolvedType rt = t.resolve();
-            return normalizeTypeString(rt.describe());
+            String described = normalizeTypeString(rt.describe());
+            metrics.outcome("types", "resolved");
+            return described;
         } catch (Throwable ex) {
             // fallback: raw
+            metrics.outcome("types", "unresolved:" + Metrics.reason(ex));
             return normalizeTypeString(t.asString());
         }
     }
@@ -458,44 +1204,32 @@ public class SemanticParserCli {
         return x;
     }
 
-    private static String extractInternalFromTypeString(String typeStr, Set<String> internal) {
-        if (typeStr == null) return null;
-        String base = typeStr.trim();
-        // strip array
-        base = base.replace("[]", "");
-        // if fully qualified
-        if (internal.contains(base)) return base;
-        // if simple, match ending
-        String simple = simpleName(base);
-        for (String fqn : internal) {
-            if (fqn.endsWith("." + simple) || fqn.endsWith("$" + simple) || fqn.equals(simple)) return fqn;
-        }
-        return null;
+    static String extractInternalFromTypeString(String typeStr, SimpleNameIndex internal, SimpleNameIndex.Scope scope) {
+        // exact FQN, else simple/nested name match preferring imported and same-package types
+        return internal.lookup(typeStr, scope);
     }
 
-    private static String simpleName(String fqnOrType) {
+    static String simpleName(String fqnOrType) {
         if (fqnOrType == null) return "";
         String s = fqnOrType.replace("[]","");
         int i = Math.max(s.lastIndexOf('.'), s.lastIndexOf('$'));
         return i>=0 ? s.substring(i+1) : s;
     }
 
-    private static List<Map<String,Object>> dedupeEdges(List<Map<String,Object>> edges, List<String> keys) {
-        LinkedHashMap<String,Map<String,Object>> out = new LinkedHashMap<>();
-        for (Map<String,Object> e : edges) {
-            StringBuilder sb = new StringBuilder();
-            for (String k: keys) sb.append(String.valueOf(e.get(k))).append("|");
-            out.putIfAbsent(sb.toString(), e);
-        }
-        return new ArrayList<>(out.values());
+    static String edgeKey(Map<String,Object> e, List<String> keys) {
+        StringBuilder sb = new StringBuilder();
+        for (String k: keys) sb.append(String.valueOf(e.get(k))).append("|");
+        return sb.toString();
     }
 
-    private static class TypeMeta {
+    static class TypeMeta {
         public final String fqn;
         public final String name;
         public final String file;
-        public TypeMeta(String fqn, String name, String file) {
-            this.fqn = fqn; this.name = name; this.file = file;
+        public final String pkg;
+        public final String fileHash;
+        public TypeMeta(String fqn, String name, String file, String pkg, String fileHash) {
+            this.fqn = fqn; this.name = name; this.file = file; this.pkg = pkg; this.fileHash = fileHash;
         }
     }
 }
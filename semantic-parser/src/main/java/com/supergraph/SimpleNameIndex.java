@@ -0,0 +1,116 @@
+package com.supergraph;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+
+import java.util.*;
+
+// Lookup of internal types by FQN and by simple name, built once after the first pass.
+// Replaces the per-reference scans over every internal FQN with a hash lookup; only names that
+// are shared by several internal types fall through to the ambiguity policy in pick().
+final class SimpleNameIndex {
+
+    // Package and import context of the compilation unit a reference appears in.
+    static final class Scope {
+        static final Scope NONE = new Scope("", Set.of(), Set.of());
+
+        final String pkg;
+        final Set<String> singleImports;
+        final Set<String> wildcardImports;
+
+        Scope(String pkg, Set<String> singleImports, Set<String> wildcardImports) {
+            this.pkg = pkg;
+            this.singleImports = singleImports;
+            this.wildcardImports = wildcardImports;
+        }
+
+        static Scope of(CompilationUnit cu) {
+            String pkg = cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
+            Set<String> single = new HashSet<>();
+            Set<String> wildcard = new HashSet<>();
+            for (ImportDeclaration imp : cu.getImports()) {
+                if (imp.isAsterisk()) wildcard.add(imp.getNameAsString());
+                else single.add(imp.getNameAsString());
+            }
+            return new Scope(pkg, single, wildcard);
+        }
+    }
+
+    private static final class Entry {
+        final String fqn;
+        final String pkg;
+        Entry(String fqn, String pkg) { this.fqn = fqn; this.pkg = pkg; }
+    }
+
+    private final Map<String, Entry> byFqn = new HashMap<>();
+    // simple name -> candidates in first-seen order
+    private final Map<String, List<Entry>> bySimple = new HashMap<>();
+
+    void add(String fqn, String pkg) {
+        if (byFqn.containsKey(fqn)) return;
+        Entry e = new Entry(fqn, pkg == null ? "" : pkg);
+        byFqn.put(fqn, e);
+        bySimple.computeIfAbsent(simpleName(fqn), k -> new ArrayList<>(1)).add(e);
+    }
+
+    boolean contains(String fqn) {
+        return fqn != null && byFqn.containsKey(fqn);
+    }
+
+    int size() {
+        return byFqn.size();
+    }
+
+    boolean hasSimpleName(String name) {
+        return bySimple.containsKey(name);
+    }
+
+    // Maps a (possibly simple or partially qualified) type string to an internal FQN, or null.
+    String lookup(String typeStr, Scope scope) {
+        if (typeStr == null) return null;
+        String base = typeStr.trim().replace("[]", "");
+        if (byFqn.containsKey(base)) return base;
+
+        List<Entry> candidates = bySimple.get(simpleName(base));
+        if (candidates == null) return null;
+        if (candidates.size() == 1) return candidates.get(0).fqn;
+
+        // Qualified reference such as Outer.Inner or Outer$Inner: narrow to types with that tail first.
+        if (base.indexOf('.') >= 0 || base.indexOf('$') >= 0) {
+            String tail = "." + base.replace('$', '.');
+            List<Entry> narrowed = new ArrayList<>();
+            for (Entry e : candidates) {
+                if (e.fqn.replace('$', '.').endsWith(tail)) narrowed.add(e);
+            }
+            if (narrowed.size() == 1) return narrowed.get(0).fqn;
+            if (!narrowed.isEmpty()) candidates = narrowed;
+        }
+        return pick(candidates, scope);
+    }
+
+    // Java scoping order: single-type imports, then the unit's own package, then on-demand imports.
+    // Anything still ambiguous resolves to the first type seen, as the linear scan used to.
+    private static String pick(List<Entry> candidates, Scope scope) {
+        if (scope == null) scope = Scope.NONE;
+        for (Entry e : candidates) {
+            if (scope.singleImports.contains(e.fqn) || scope.singleImports.contains(declaringName(e.fqn))) return e.fqn;
+        }
+        for (Entry e : candidates) {
+            if (e.pkg.equals(scope.pkg)) return e.fqn;
+        }
+        for (Entry e : candidates) {
+            if (scope.wildcardImports.contains(e.pkg) || scope.wildcardImports.contains(declaringName(e.fqn))) return e.fqn;
+        }
+        return candidates.get(0).fqn;
+    }
+
+    private static String declaringName(String fqn) {
+        int i = Math.max(fqn.lastIndexOf('.'), fqn.lastIndexOf('$'));
+        return i >= 0 ? fqn.substring(0, i) : "";
+    }
+
+    private static String simpleName(String s) {
+        int i = Math.max(s.lastIndexOf('.'), s.lastIndexOf('$'));
+        return i >= 0 ? s.substring(i + 1) : s;
+    }
+}
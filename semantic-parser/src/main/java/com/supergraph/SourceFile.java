@@ -0,0 +1,72 @@
+package com.supergraph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// The bytes of one source file, read once: the same buffer is hashed for file_hash and handed to the parser.
+//
+// Files of at least mapThreshold bytes (--mmap-threshold; 0 = never) are memory-mapped instead of copied onto
+// the heap, which saves the copy and leaves caching to the OS page cache. A file that cannot be read has empty
+// content and its error set; it hashes as empty, as before, and does not parse.
+final class SourceFile {
+
+    final Path path;
+    final ByteBuffer content; // read-only view; position 0
+    final IOException error;  // null when the file was read
+
+    private SourceFile(Path path, ByteBuffer content, IOException error) {
+        this.path = path;
+        this.content = content;
+        this.error = error;
+    }
+
+    static SourceFile read(Path path, long mapThreshold) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (mapThreshold > 0 && size >= mapThreshold) {
+                return new SourceFile(path, ch.map(FileChannel.MapMode.READ_ONLY, 0, size), null);
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // a file that shrinks meanwhile ends early; one that grows is cut at the size seen above
+            }
+            buf.flip();
+            return new SourceFile(path, buf.asReadOnlyBuffer(), null);
+        } catch (IOException e) {
+            return new SourceFile(path, ByteBuffer.allocate(0), e);
+        }
+    }
+
+    String hash(ContentHash h) {
+        return h.of(content);
+    }
+
+    // A fresh stream over the content; the buffer itself is not consumed.
+    InputStream open() {
+        ByteBuffer b = content.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return b.hasRemaining() ? b.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] dst, int off, int len) {
+                if (len == 0) return 0;
+                if (!b.hasRemaining()) return -1;
+                int n = Math.min(len, b.remaining());
+                b.get(dst, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return b.remaining();
+            }
+        };
+    }
+}
@@ -0,0 +1,235 @@
+package com.supergraph;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Source roots for the symbol solver's JavaParserTypeSolvers, taken from the build model where there is one:
+//
+//   Maven   pom.xml <sourceDirectory>/<testSourceDirectory> (default src/main/java, src/test/java), following
+//           <modules> (also those in profiles) to any depth
+//   Gradle  settings.gradle(.kts) include(...) and project(...).projectDir, then per project every src/<set>/java
+//           plus the directories named on srcDir/srcDirs lines of its build script
+//
+// Only roots that exist are used. With no build file, none that names an existing root, or one that cannot be
+// read, the tree is walked to any depth for src/main/java and src/test/java, skipping hidden directories and
+// build output. Gradle scripts are read as UTF-8 with malformed bytes replaced, since only the ASCII around
+// paths matters here.
+//
+// Build-model results are kept for the life of the JVM (the server parses the same root again and again) and
+// reused while every build file read for them is unchanged; a new module shows up as a change to its parent's.
+// For Gradle the src directory of each project (or the project directory while it has none) is watched the
+// same way, so a new source set such as src/integrationTest is picked up.
+final class SourceRoots {
+
+    private static final class Cached {
+        final List<Path> roots;
+        final Map<Path, FileTime> buildFiles;
+        Cached(List<Path> roots, Map<Path, FileTime> buildFiles) { this.roots = roots; this.buildFiles = buildFiles; }
+    }
+
+    private static final Map<Path, Cached> CACHE = new ConcurrentHashMap<>();
+
+    private static final Set<String> SKIP = Set.of("target", "build", "out", "node_modules");
+    private static final Pattern INCLUDE = Pattern.compile("\\binclude\\b\\s*(\\([^)]*\\)|[^\\n]*)");
+    private static final Pattern QUOTED = Pattern.compile("[\"']([^\"'\\n]+)[\"']");
+    private static final Pattern PROJECT_DIR =
+            Pattern.compile("project\\(\\s*[\"']([^\"']+)[\"']\\s*\\)\\.projectDir\\s*=[^\"'\\n]*[\"']([^\"'\\n]+)[\"']");
+    private static final Pattern SRC_DIRS = Pattern.compile("\\bsrcDirs?\\b([^\\n]*)");
+
+    private SourceRoots() {}
+
+    static List<Path> detect(Path root) throws IOException {
+        Cached c = CACHE.get(root);
+        if (c != null && unchanged(c.buildFiles)) return existing(c.roots);
+
+        Set<Path> roots = new LinkedHashSet<>();
+        Map<Path, FileTime> buildFiles = new LinkedHashMap<>();
+        try {
+            if (Files.isRegularFile(root.resolve("pom.xml"))) {
+                maven(root, roots, buildFiles);
+            } else if (gradleFile(root, "settings") != null || gradleFile(root, "build") != null) {
+                gradle(root, roots, buildFiles);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            roots.clear();
+        }
+        List<Path> out = existing(roots);
+        if (!out.isEmpty()) {
+            CACHE.put(root, new Cached(List.copyOf(roots), buildFiles));
+            return out;
+        }
+        CACHE.remove(root);
+        return walk(root);
+    }
+
+    private static List<Path> existing(Collection<Path> roots) {
+        List<Path> out = new ArrayList<>();
+        for (Path p : roots) if (Files.isDirectory(p)) out.add(p);
+        return out;
+    }
+
+    private static boolean unchanged(Map<Path, FileTime> buildFiles) {
+        for (Map.Entry<Path, FileTime> e : buildFiles.entrySet()) {
+            try {
+                if (!Files.getLastModifiedTime(e.getKey()).equals(e.getValue())) return false;
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // buildFile may also be a directory, whose modification time changes when an entry is added or removed
+    private static void read(Path buildFile, Map<Path, FileTime> buildFiles) throws IOException {
+        buildFiles.put(buildFile, Files.getLastModifiedTime(buildFile));
+    }
+
+    private static String readText(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private static void maven(Path dir, Set<Path> roots, Map<Path, FileTime> buildFiles) throws IOException {
+        Path pom = dir.resolve("pom.xml");
+        if (buildFiles.containsKey(pom) || !Files.isRegularFile(pom)) return;
+        read(pom, buildFiles);
+        Element project = parseXml(pom);
+        Element build = child(project, "build");
+        roots.add(mavenDir(dir, text(child(build, "sourceDirectory")), "src/main/java"));
+        roots.add(mavenDir(dir, text(child(build, "testSourceDirectory")), "src/test/java"));
+
+        List<String> modules = new ArrayList<>();
+        for (Element m : children(child(project, "modules"), "module")) modules.add(text(m));
+        for (Element profile : children(child(project, "profiles"), "profile")) {
+            for (Element m : children(child(profile, "modules"), "module")) modules.add(text(m));
+        }
+        for (String m : modules) {
+            if (m == null || m.isBlank()) continue;
+            Path md = dir.resolve(m.trim()).normalize();
+            if (m.trim().endsWith(".xml")) md = md.getParent(); // a module may name its pom file
+            maven(md, roots, buildFiles);
+        }
+    }
+
+    // ${basedir} and ${project.basedir} are the module directory; other properties are not evaluated, so a
+    // directory that uses them falls back to the default.
+    private static Path mavenDir(Path dir, String configured, String dflt) {
+        if (configured == null || configured.isBlank()) return dir.resolve(dflt);
+        String s = configured.trim().replace("${project.basedir}", dir.toString()).replace("${basedir}", dir.toString());
+        return s.contains("${") ? dir.resolve(dflt) : dir.resolve(s).normalize();
+    }
+
+    // null for a pom that cannot be parsed; its defaults still apply
+    private static Element parseXml(Path file) {
+        try {
+            DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+            f.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            f.setExpandEntityReferences(false);
+            return f.newDocumentBuilder().parse(file.toFile()).getDocumentElement();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Element child(Element parent, String name) {
+        List<Element> c = children(parent, name);
+        return c.isEmpty() ? null : c.get(0);
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        if (parent == null) return List.of();
+        List<Element> out = new ArrayList<>();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element && name.equals(n.getNodeName())) out.add((Element) n);
+        }
+        return out;
+    }
+
+    private static String text(Element e) {
+        return e == null ? null : e.getTextContent();
+    }
+
+    private static void gradle(Path root, Set<Path> roots, Map<Path, FileTime> buildFiles) throws IOException {
+        Set<Path> projects = new LinkedHashSet<>();
+        projects.add(root);
+        Path settings = gradleFile(root, "settings");
+        if (settings != null) {
+            read(settings, buildFiles);
+            String s = readText(settings);
+            Map<String, Path> dirs = new HashMap<>();
+            Matcher pd = PROJECT_DIR.matcher(s);
+            while (pd.find()) dirs.put(pd.group(1), root.resolve(pd.group(2)).normalize());
+            Matcher inc = INCLUDE.matcher(s);
+            while (inc.find()) {
+                Matcher q = QUOTED.matcher(inc.group(1));
+                while (q.find()) {
+                    String path = q.group(1).startsWith(":") ? q.group(1) : ":" + q.group(1);
+                    projects.add(dirs.getOrDefault(path, root.resolve(path.substring(1).replace(':', '/')).normalize()));
+                }
+            }
+        }
+        for (Path project : projects) {
+            Path dir = project.resolve("src");
+            if (Files.isDirectory(dir)) {
+                read(dir, buildFiles);
+                try (Stream<Path> sets = Files.list(dir)) {
+                    sets.map(set -> set.resolve("java")).sorted().forEach(roots::add);
+                }
+            } else if (Files.isDirectory(project)) {
+                read(project, buildFiles);
+            }
+            Path script = gradleFile(project, "build");
+            if (script == null) continue;
+            read(script, buildFiles);
+            Matcher m = SRC_DIRS.matcher(readText(script));
+            while (m.find()) {
+                Matcher q = QUOTED.matcher(m.group(1));
+                while (q.find()) roots.add(project.resolve(q.group(1)).normalize());
+            }
+        }
+    }
+
+    private static Path gradleFile(Path dir, String name) {
+        for (String ext : List.of(".gradle", ".gradle.kts")) {
+            Path p = dir.resolve(name + ext);
+            if (Files.isRegularFile(p)) return p;
+        }
+        return null;
+    }
+
+    private static List<Path> walk(Path root) throws IOException {
+        List<Path> roots = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(root)) return FileVisitResult.CONTINUE;
+                String name = dir.getFileName().toString();
+                if (name.startsWith(".") || SKIP.contains(name)) return FileVisitResult.SKIP_SUBTREE;
+                if (dir.endsWith("src/main/java") || dir.endsWith("src/test/java")) {
+                    roots.add(dir);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(roots);
+        return roots;
+    }
+}
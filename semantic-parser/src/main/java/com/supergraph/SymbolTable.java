@@ -0,0 +1,41 @@
+package com.supergraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Strings interned to dense ids (0, 1, 2, ... in first-seen order). Graph edges hold these ids instead of
+// a map with its own String references per row; names are looked up again only when a row is written.
+//
+// Not thread-safe: every fragment interns into its own table and Graph.addAll translates ids into the
+// merged one, so workers never share a table.
+final class SymbolTable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[64];
+    private int size;
+
+    int intern(String s) {
+        Integer id = ids.get(s);
+        if (id != null) return id;
+        if (size == names.length) names = Arrays.copyOf(names, size * 2);
+        names[size] = s;
+        ids.put(s, size);
+        return size++;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // ids of every symbol of other in this table, indexed by other's ids
+    int[] importAll(SymbolTable other) {
+        int[] map = new int[other.size];
+        for (int i = 0; i < other.size; i++) map[i] = intern(other.names[i]);
+        return map;
+    }
+}
@@ -0,0 +1,66 @@
+package com.supergraph;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Resolves internal types from the units the first pass already parsed, ahead of the source-root
+// JavaParserTypeSolvers, which would otherwise parse every referenced file again, once per worker, and keep
+// the copies. They still answer for types whose unit was not kept (parse cache hits, --low-memory).
+//
+// The units are shared by every worker's solver stack. A worker only reads the declarations of another
+// worker's unit (names, members, supertypes); the per-node type caches JavaParser writes sit on expression
+// nodes and are written while a unit is extracted, by the one worker extracting it. --no-shared-units goes
+// back to per-worker copies.
+final class UnitTypeSolver implements TypeSolver {
+
+    // Type declarations by FQN, first unit wins as in the type index. Empty until the first pass publishes
+    // its units, and cleared once the second pass is done.
+    static final class Units {
+        private volatile Map<String, TypeDeclaration<?>> byFqn = Map.of();
+
+        void publish(Iterable<CompilationUnit> units) {
+            Map<String, TypeDeclaration<?>> m = new HashMap<>();
+            for (CompilationUnit cu : units) {
+                for (TypeDeclaration<?> td : cu.findAll(TypeDeclaration.class)) {
+                    td.getFullyQualifiedName().ifPresent(fqn -> m.putIfAbsent(fqn, td));
+                }
+            }
+            byFqn = m;
+        }
+
+        void clear() {
+            byFqn = Map.of();
+        }
+    }
+
+    private final Units units;
+    private TypeSolver parent;
+
+    UnitTypeSolver(Units units) {
+        this.units = units;
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        TypeDeclaration<?> td = units.byFqn.get(name);
+        if (td == null) return SymbolReference.unsolved();
+        return SymbolReference.solved(JavaParserFacade.get(this).getTypeDeclaration(td));
+    }
+}
@@ -0,0 +1,41 @@
+package com.supergraph;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CallResolutionCacheTest {
+
+    // t.get() has the same text and the same described scope type ("T") in A and B, but binds to a different
+    // method in each; one worker means both go through the same cache.
+    @Test
+    void callsOnTypeVariablesWithDifferentBoundsAreNotShared(@TempDir Path root) throws Exception {
+        Path p = Files.createDirectories(root.resolve("src/main/java/p"));
+        Files.writeString(p.resolve("Source.java"), "package p;\npublic interface Source { String get(); }\n");
+        Files.writeString(p.resolve("Holder.java"), "package p;\npublic class Holder { public String get() { return \"\"; } }\n");
+        Files.writeString(p.resolve("A.java"), "package p;\npublic class A<T extends Source> { T t; void m() { t.get(); } }\n");
+        Files.writeString(p.resolve("B.java"), "package p;\npublic class B<T extends Holder> { T t; void m() { t.get(); } }\n");
+
+        Map<String, String> a = new HashMap<>();
+        a.put("root", root.toString());
+        a.put("threads", "1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SemanticParserCli.run(SemanticParserCli.Options.from(a), out);
+
+        Map<String, String> targets = new HashMap<>();
+        for (JsonNode call : new ObjectMapper().readTree(out.toByteArray()).get("calls")) {
+            targets.put(call.get("from_owner_fqn").asText(), call.get("to_owner_fqn").asText());
+        }
+        assertEquals("p.Source", targets.get("p.A"));
+        assertEquals("p.Holder", targets.get("p.B"));
+    }
+}